@@ -0,0 +1,44 @@
+/*
+ * WebSocket benchmarks. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.lang.management.ManagementFactory;
+
+/*
+ * Bytes allocated per operation by ALL threads of the JVM.
+ * JMH "-prof gc" counts the benchmark threads only, but most of the
+ * websocket work runs in the WsConnection/WsListener threads.
+ * HotSpot only (com.sun.management.ThreadMXBean).
+ */
+public class WsAllocations {
+    final com.sun.management.ThreadMXBean mxBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long startBytes;
+    long operations;
+
+    static long allocatedBytes(com.sun.management.ThreadMXBean mxBean) {
+        long total = 0;
+        for (long bytes : mxBean.getThreadAllocatedBytes(mxBean.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    void start() {
+        operations = 0;
+        startBytes = allocatedBytes(mxBean);
+    }
+
+    void operation() {
+        operations++;
+    }
+
+    // printed to the benchmark log after each iteration
+    void report(String label) {
+        long bytes = allocatedBytes(mxBean) - startBytes;
+        System.out.printf("%n%s all threads: %d B/op (%d ops)%n",
+                label, operations == 0 ? 0 : bytes / operations, operations);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * WebSocket benchmarks. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Echo round trip over loopback: WsConnection.send -> WsIo.sendFrame (masked
+ * client frames), WsListener.readPayload + WsIo.umaskPayload on the server,
+ * WsMessage assembly (asByteArray/asString) on both sides.
+ * "-prof gc" gc.alloc.rate.norm counts the benchmark thread only (client send),
+ * the "all threads" line after each iteration is the total allocation
+ * per round trip (the client and the server run in the same JVM).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WsEchoBenchmark {
+    @Param({"16", "1024", "16384", "262144", "1048576"})
+    int payloadSize;
+    @Param({"125", "4096", "32768"}) // 32768: WsParameters default
+    int payloadBufferLength;
+    @Param({"false", "true"})
+    boolean tcpNoDelay;
+
+    WsLoopback loopback;
+    final WsAllocations allocations = new WsAllocations();
+    byte[] payload;
+    String text;
+    final BlockingQueue<Object> received = new ArrayBlockingQueue<>(1);
+
+    WsConnection.Handler echoHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            if (msg.isText()) {
+                conn.send(msg.asString());
+            } else {
+                conn.send(msg.asByteArray());
+            }
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            received.offer(msg.isText() ? msg.asString() : msg.asByteArray());
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        payload = WsLoopback.payload(payloadSize);
+        text = new String(payload, "UTF-8");
+        WsParameters wsp = new WsParameters()
+                .setMaxMessageLength(payloadSize)
+                .setPayloadBufferLength(payloadBufferLength)
+                .setConnectionSoTimeout(10000, true);
+        loopback = new WsLoopback(echoHandler, clientHandler, wsp, tcpNoDelay);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        allocations.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        allocations.report("WsEchoBenchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loopback.close();
+    }
+
+    Object awaitEcho() throws InterruptedException {
+        allocations.operation();
+        Object echo = received.poll(10, TimeUnit.SECONDS);
+        if (echo == null) {
+            throw new IllegalStateException("Echo timeout: " + loopback.client.getStatus());
+        }
+        return echo;
+    }
+
+    @Benchmark
+    public Object binaryRoundTrip() throws InterruptedException {
+        loopback.client.send(payload);
+        return awaitEcho();
+    }
+
+    @Benchmark
+    public Object textRoundTrip() throws InterruptedException {
+        loopback.client.send(text);
+        return awaitEcho();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * WebSocket benchmarks. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+
+/*
+ * Client-server pair connected over the loopback interface.
+ * The server listens on an ephemeral port.
+ */
+public class WsLoopback {
+    final WebSocket webSocket;
+    final WsServer server;
+    final WsConnection client;
+
+    WsLoopback(WsConnection.Handler serverHandler,
+               WsConnection.Handler clientHandler,
+               WsParameters wsp,
+               boolean tcpNoDelay) throws IOException {
+        webSocket = new WebSocket(InetAddress.getByName("localhost"));
+        server = webSocket.startServer(0, serverHandler, wsp).ready();
+        client = webSocket.connect("ws://localhost:" + server.getPort(),
+                clientHandler, wsp).ready();
+        if (client == null || !client.isOpen()) {
+            close();
+            throw new IOException("Loopback connection failed");
+        }
+// WsIo.sendFrame writes the frame header and the payload separately:
+// with Nagle's algorithm enabled small messages wait for delayed ACKs
+        setTcpNoDelay(client, tcpNoDelay);
+        for (WsConnection conn : server.listConnections()) {
+            setTcpNoDelay(conn, tcpNoDelay);
+        }
+    }
+
+    // no other API of the library gives the socket
+    @SuppressWarnings("deprecation")
+    static void setTcpNoDelay(WsConnection conn, boolean on) throws SocketException {
+        conn.getSocket().setTcpNoDelay(on);
+    }
+
+    void close() {
+        webSocket.closeAll("Benchmark completed");
+    }
+
+    static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) ('a' + i % 26); // ASCII, valid UTF-8 text too
+        }
+        return payload;
+    }
+}
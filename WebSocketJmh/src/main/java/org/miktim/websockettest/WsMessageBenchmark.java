@@ -0,0 +1,162 @@
+/*
+ * WebSocket benchmarks. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * WsMessage assembly: the server consumes the incoming message
+ * (ArrayDeque<byte[]> of frame payloads) with the selected method
+ * and acknowledges it with a 1-byte binary message.
+ * "read" is the InputStream.read(byte[]) path into a reused buffer.
+ * See the "all threads" line after each iteration for bytes allocated per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WsMessageBenchmark {
+    @Param({"1024", "65536", "1048576"})
+    int payloadSize;
+    @Param({"125", "4096", "32768"})
+    int payloadBufferLength;
+    @Param({"false", "true"})
+    boolean tcpNoDelay;
+    @Param({"asByteArray", "asString", "read"})
+    String consume;
+
+    WsLoopback loopback;
+    final WsAllocations allocations = new WsAllocations();
+    byte[] payload;
+    String text;
+    byte[] readBuffer;
+    final byte[] ack = new byte[1];
+    final BlockingQueue<Object> received = new ArrayBlockingQueue<>(1);
+
+    WsConnection.Handler serverHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            int length;
+            try {
+                if (consume.equals("asByteArray")) {
+                    length = msg.asByteArray().length;
+                } else if (consume.equals("asString")) {
+                    length = msg.asString().length();
+                } else {
+                    length = 0;
+                    int n;
+                    while ((n = msg.read(readBuffer, 0, readBuffer.length)) > 0) {
+                        length += n;
+                    }
+                }
+                if (length != payloadSize) {
+                    conn.close(WsStatus.INTERNAL_ERROR, "Wrong length: " + length);
+                    return;
+                }
+                conn.send(ack);
+            } catch (IOException e) {
+                conn.close(WsStatus.INTERNAL_ERROR, e.toString());
+            }
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            received.offer(msg.asByteArray());
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        payload = WsLoopback.payload(payloadSize);
+        text = new String(payload, "UTF-8");
+        readBuffer = new byte[payloadSize];
+        WsParameters wsp = new WsParameters()
+                .setMaxMessageLength(payloadSize)
+                .setPayloadBufferLength(payloadBufferLength)
+                .setConnectionSoTimeout(10000, true);
+        loopback = new WsLoopback(serverHandler, clientHandler, wsp, tcpNoDelay);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        allocations.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        allocations.report("WsMessageBenchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loopback.close();
+    }
+
+    @Benchmark
+    public Object consumeMessage() throws InterruptedException {
+        if (consume.equals("asString")) {
+            loopback.client.send(text);
+        } else {
+            loopback.client.send(payload);
+        }
+        allocations.operation();
+        Object ack = received.poll(10, TimeUnit.SECONDS);
+        if (ack == null) {
+            throw new IllegalStateException("Ack timeout: " + loopback.client.getStatus());
+        }
+        return ack;
+    }
+}
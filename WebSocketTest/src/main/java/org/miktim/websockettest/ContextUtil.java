@@ -1,8 +1,8 @@
 package org.miktim.websockettest;
 
 import android.content.Intent;
-
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import android.net.Uri;
+import android.os.Build;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -10,19 +10,41 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-public class ContextUtil {
+public class ContextUtil implements TestContext {
     MainActivity context;
 
     ContextUtil(MainActivity activity) {
         context = activity;
     }
 
-    void sendBroadcastMessage(String msg) {
-        Intent intent = new Intent();
-        intent.putExtra("message", msg);
-        intent.setAction(MainActivity.BROADCAST_MESSAGE);
-        LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+    @Override
+    public void log(String msg) {
+        context.logBuffer.offer(msg); // null: clear console
+    }
+
+    @Override
+    public File getKeyFile() {
+        String asset = MainActivity.KEY_FILE.split(";")[0];
+        saveAssetAsFile(asset);
+        return keyFile(asset);
+    }
+
+    @Override
+    public String getKeyPassword() {
+        return MainActivity.KEY_FILE.split(";")[1];
     }
+
+    @Override
+    public int getAndroidApi() {
+        return Build.VERSION.SDK_INT;
+    }
+
+    @Override
+    public void openUrl(String url) {
+        Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
+        context.startActivity(browserIntent);
+    }
+
     File keyFile(String asset) {
         return new File(context.getFilesDir(), asset);
     }
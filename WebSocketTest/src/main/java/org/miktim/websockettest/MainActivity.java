@@ -6,30 +6,33 @@ package org.miktim.websockettest;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.StrictMode;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewTreeObserver;
-import android.widget.ScrollView;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+
 import org.miktim.websocket.WebSocket;
 
 public class MainActivity extends AppCompatActivity {
 // keyFileName;password
 //    static String KEY_FILE = "localhost.bks;qwerty"; //
     static String KEY_FILE = "localhost.bks1;qwerty"; // BKS-V1
+    // test threads -> console, drained on the UI thread by WsConsole
+    final LogRingBuffer logBuffer = new LogRingBuffer(8192);
     WsConsole console;
+    ContextUtil util;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,11 +43,16 @@ public class MainActivity extends AppCompatActivity {
         StrictMode.setThreadPolicy(policy);
 
         console = new WsConsole();
-        LocalBroadcastManager.getInstance(this).registerReceiver(mMessageReceiver,
-                new IntentFilter(BROADCAST_MESSAGE));
+        util = new ContextUtil(this);
         getSupportActionBar().setTitle("WebSocket " + WebSocket.VERSION + " test");
     }
 
+    @Override
+    protected void onDestroy() {
+        console.stop();
+        super.onDestroy();
+    }
+
     @Override
     public void finish() {
         super.finish();
@@ -63,22 +71,25 @@ public class MainActivity extends AppCompatActivity {
         console.erase();
         int itemId = item.getItemId();
         if (itemId == R.id.WSEnvironment) {
-            (new WsEnvironment(this)).start();
+            (new WsEnvironment(util)).start();
             return true;
         } else  if (itemId == R.id.WSClientServerTest) {
-            (new WsWssClientServerTest(this, "ws")).start();
+            (new WsWssClientServerTest(util, "ws")).start();
             return true;
         } else if (itemId == R.id.WSSClientServerTest) {
-            (new WsWssClientServerTest(this, "wss")).start();
+            (new WsWssClientServerTest(util, "wss")).start();
             return true;
         } else if (itemId == R.id.WSSClientTest) {
-            (new WssClientTest(this)).start();
+            (new WssClientTest(util)).start();
             return true;
         } else if (itemId == R.id.WSServerTest) {
-            (new WsServerTest(this)).start();
+            (new WsServerTest(util)).start();
             return true;
         } else if (itemId == R.id.ClientServerStressTest){
-            (new WsClientServerStressTest(this)).start();
+            (new WsClientServerStressTest(util)).start();
+            return true;
+        } else if (itemId == R.id.CipherSuiteTest) {
+            (new WsCipherSuiteTest(util, new TestOptions())).start();
             return true;
         } else if (itemId == R.id.Exit) {
             finish();
@@ -87,48 +98,119 @@ public class MainActivity extends AppCompatActivity {
         return false;
     }
 
-    static String BROADCAST_MESSAGE = "org.miktim.MSG";
-    private final BroadcastReceiver mMessageReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            // Extract data included in the Intent
-            String message = intent.getStringExtra("message");
-            if (message == null) console.erase();
-            else console.println(message);
-        }
-    };
+    /*
+     * Virtualized console (ListView). Lines are drained from logBuffer
+     * in batches on a ~frame tick, the number of retained lines is limited.
+     * Dropped lines (buffer overflow, trimmed) are shown in the subtitle.
+     */
+    public class WsConsole implements Runnable {
+        static final int MAX_LINES = 5000;     // retained lines
+        static final int MAX_BATCH = 500;      // messages per tick
+        static final int TICK_MILLIS = 16;
+
+        final ListView consoleListView = findViewById(R.id.ConsoleListView);
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final ArrayList<String> batch = new ArrayList<>(MAX_BATCH);
+        final String[] lines = new String[MAX_LINES]; // circular
+        int firstLine = 0;
+        int lineCount = 0;
+        long trimmedLines = 0;
+        long droppedLines = 0;
+        final TextView measureView = (TextView) getLayoutInflater()
+                .inflate(R.layout.console_line, null);
+        int maxLineWidth = 0;
+
+        final BaseAdapter adapter = new BaseAdapter() {
+            @Override
+            public int getCount() {
+                return lineCount;
+            }
+
+            @Override
+            public Object getItem(int position) {
+                return lines[(firstLine + position) % MAX_LINES];
+            }
+
+            @Override
+            public long getItemId(int position) {
+                return position;
+            }
+
+            @Override
+            public View getView(int position, View convertView, ViewGroup parent) {
+                TextView view = (TextView) convertView;
+                if (view == null) {
+                    view = (TextView) getLayoutInflater()
+                            .inflate(R.layout.console_line, parent, false);
+                }
+                view.setText((String) getItem(position));
+                return view;
+            }
+        };
 
-    public class WsConsole {
-        TextView consoleTextView = findViewById(R.id.ConsoleTextView);
-        ScrollView consoleScrollView = findViewById(R.id.ConsoleScrollView);
-// https://stackoverflow.com/questions/3307267/how-to-scroll-to-bottom-in-a-scrollview-on-activity-startup
         public WsConsole() {
-            consoleTextView.setFocusable(true);
-            consoleScrollView.getViewTreeObserver().addOnGlobalLayoutListener(
-                    new ViewTreeObserver.OnGlobalLayoutListener() {
-                @Override
-                public void onGlobalLayout() {
-                    consoleScrollView.post(new Runnable() {
-                        public void run() {
-                            consoleScrollView.fullScroll(View.FOCUS_DOWN);
-                        }
-                    });
+            consoleListView.setAdapter(adapter);
+            setConsoleWidth(getResources().getDisplayMetrics().widthPixels);
+            handler.post(this);
+        }
+
+        void setConsoleWidth(int width) {
+            ViewGroup.LayoutParams params = consoleListView.getLayoutParams();
+            params.width = width;
+            consoleListView.setLayoutParams(params);
+        }
+
+        @Override
+        public void run() { // tick
+            batch.clear();
+            if (logBuffer.drain(batch, MAX_BATCH) > 0) {
+                int width = maxLineWidth;
+                for (String msg : batch) {
+                    if (msg == LogRingBuffer.CLEAR) {
+                        erase();
+                        continue;
+                    }
+                    Log.d("", msg);
+                    for (String line : msg.split("\r?\n|\r", -1)) {
+                        println(line);
+                        width = Math.max(width,
+                                (int) measureView.getPaint().measureText(line));
+                    }
                 }
-            });
-//            consoleTextView.setMovementMethod(new ScrollingMovementMethod());
-            erase();
+                if (width > maxLineWidth) {
+                    maxLineWidth = width;
+                    setConsoleWidth(Math.max(width + measureView.getPaddingLeft()
+                                    + measureView.getPaddingRight(),
+                            getResources().getDisplayMetrics().widthPixels));
+                }
+                adapter.notifyDataSetChanged();
+            }
+            long dropped = logBuffer.getDropped() + trimmedLines;
+            if (dropped != droppedLines) {
+                droppedLines = dropped;
+                getSupportActionBar().setSubtitle("dropped lines: " + dropped);
+            }
+            handler.postDelayed(this, TICK_MILLIS);
+        }
+
+        void stop() {
+            handler.removeCallbacks(this);
         }
 
-        public void println(String msg) {
-            consoleTextView.append(msg + "\n\r");
-            Log.d("", msg);
-//            consoleScrollView.fullScroll(View.FOCUS_DOWN);
-//            int scroll_amount = consoleTextView.getBottom();
-//            consoleScrollView.scrollTo(0, scroll_amount);
+        void println(String line) {
+            if (lineCount == MAX_LINES) {
+                firstLine = (firstLine + 1) % MAX_LINES;
+                lineCount--;
+                trimmedLines++;
+            }
+            lines[(firstLine + lineCount) % MAX_LINES] = line;
+            lineCount++;
         }
+
         public void erase() {
-            consoleTextView.setText("");
+            firstLine = 0;
+            lineCount = 0;
+            adapter.notifyDataSetChanged();
         }
     }
 }
-
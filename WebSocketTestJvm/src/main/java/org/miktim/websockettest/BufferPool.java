@@ -0,0 +1,87 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Pool of byte buffers in power of two size classes: 1 KiB .. maxBufferSize
+ * (rounded up). Each class keeps up to buffersPerClass free buffers.
+ * Larger requests are allocated and released to the GC as usual.
+ * acquire()/release() are thread safe and do not allocate for pooled sizes.
+ */
+public class BufferPool {
+    static final int MIN_SIZE_BITS = 10; // 1 KiB
+
+    final byte[][][] free; // [class][buffer]
+    final int[] freeCounts;
+    final int maxBufferSize;
+    final AtomicLong acquired = new AtomicLong();
+    final AtomicLong allocated = new AtomicLong(); // buffers
+    final AtomicLong allocatedBytes = new AtomicLong();
+
+    public BufferPool(int maxBufferSize, int buffersPerClass) {
+        int classes = Math.max(1, sizeClass(maxBufferSize) + 1);
+        this.maxBufferSize = 1 << (MIN_SIZE_BITS + classes - 1);
+        free = new byte[classes][buffersPerClass][];
+        freeCounts = new int[classes];
+    }
+
+    static int sizeClass(int size) {
+        if (size <= 1 << MIN_SIZE_BITS) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_BITS;
+    }
+
+    // returns a buffer of at least minSize bytes, the content is undefined
+    public byte[] acquire(int minSize) {
+        acquired.incrementAndGet();
+        if (minSize <= maxBufferSize) {
+            int cls = sizeClass(minSize);
+            byte[][] buffers = free[cls];
+            synchronized (buffers) {
+                if (freeCounts[cls] > 0) {
+                    byte[] buffer = buffers[--freeCounts[cls]];
+                    buffers[freeCounts[cls]] = null;
+                    return buffer;
+                }
+            }
+            minSize = 1 << (MIN_SIZE_BITS + cls);
+        }
+        allocated.incrementAndGet();
+        allocatedBytes.addAndGet(minSize);
+        return new byte[minSize];
+    }
+
+    // buffers of the foreign sizes and the pool overflow are left to the GC
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length > maxBufferSize) return;
+        int cls = sizeClass(buffer.length);
+        if (buffer.length != 1 << (MIN_SIZE_BITS + cls)) return;
+        byte[][] buffers = free[cls];
+        synchronized (buffers) {
+            if (freeCounts[cls] < buffers.length) {
+                buffers[freeCounts[cls]++] = buffer;
+            }
+        }
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BufferPool: acquired %d, allocated %d (%d bytes)",
+                getAcquired(), getAllocated(), getAllocatedBytes());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+
+/*
+ * GC and allocation counters and the peak heap between start() and report().
+ * Allocated bytes are summed over ALL live threads (the websocket work runs
+ * in the WsConnection/WsListener threads), HotSpot only.
+ * Desktop/server JVM only: java.lang.management is absent on Android.
+ */
+public class GcReport {
+    long startBytes;
+    long startCollections;
+    long startMillis;
+
+    static long allocatedBytes() {
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        try {
+            com.sun.management.ThreadMXBean hotSpot = (com.sun.management.ThreadMXBean) mxBean;
+            long total = 0;
+            for (long bytes : hotSpot.getThreadAllocatedBytes(mxBean.getAllThreadIds())) {
+                if (bytes > 0) total += bytes;
+            }
+            return total;
+        } catch (Throwable e) {
+            return -1; // not supported
+        }
+    }
+
+    // CPU time of all the process threads, nanoseconds, -1: n/a
+    public static long getProcessCpuNanos() {
+        try {
+            return ((com.sun.management.OperatingSystemMXBean)
+                    ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+        } catch (Throwable e) {
+            return -1; // not supported
+        }
+    }
+
+    static long[] collections() { // count, time millis
+        long[] gc = new long[2];
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc[0] += Math.max(0, bean.getCollectionCount());
+            gc[1] += Math.max(0, bean.getCollectionTime());
+        }
+        return gc;
+    }
+
+    // sum of the heap pool peaks since start() (upper bound), bytes
+    public static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    public GcReport start() {
+        resetPeakHeap();
+        long[] gc = collections();
+        startCollections = gc[0];
+        startMillis = gc[1];
+        startBytes = allocatedBytes();
+        return this;
+    }
+
+    public long getAllocatedBytes() {
+        return startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+    }
+
+    // "<allocated> B/op GC: <n> collections <ms> ms"
+    public String report(long operations) {
+        long bytes = getAllocatedBytes();
+        long[] gc = collections();
+        return String.format("%s B/op GC: %d collections %d ms",
+                bytes < 0 ? "n/a" : String.valueOf(bytes / Math.max(1, operations)),
+                gc[0] - startCollections, gc[1] - startMillis);
+    }
+}
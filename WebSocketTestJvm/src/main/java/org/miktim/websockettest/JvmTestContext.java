@@ -0,0 +1,52 @@
+/*
+ * WebSocket test. MIT (c) 2023 miktim@mail.ru, 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.io.File;
+import java.io.PrintStream;
+
+public class JvmTestContext implements TestContext {
+    final PrintStream out;
+    final File keyFile;
+    final String keyPassword;
+
+    // keyInfo: "keyFileName;password"
+    public JvmTestContext(PrintStream out, String keyInfo) {
+        this.out = out;
+        String[] sa = keyInfo.split(";");
+        keyFile = new File(sa[0]);
+        keyPassword = sa.length > 1 ? sa[1] : "";
+    }
+
+    @Override
+    public void log(String msg) {
+        if (msg == null) {
+            out.println("--------");
+        } else {
+            out.println(msg);
+        }
+        out.flush();
+    }
+
+    @Override
+    public File getKeyFile() {
+        return keyFile;
+    }
+
+    @Override
+    public String getKeyPassword() {
+        return keyPassword;
+    }
+
+    @Override
+    public int getAndroidApi() {
+        return 0;
+    }
+
+    @Override
+    public void openUrl(String url) {
+        log("Open in the browser: " + url);
+    }
+}
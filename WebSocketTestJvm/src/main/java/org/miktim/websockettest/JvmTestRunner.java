@@ -0,0 +1,124 @@
+/*
+ * WebSocket test runner for the desktop/server JVM. MIT (c) 2023 miktim@mail.ru, 2025 agent@local
+ *
+ * Usage: JvmTestRunner [-o outFile] [-k keyFile;password] [-n netProfile] test[:key=value,...]...
+ * Tests: env ws wss wssclient server stress load rate latency alloc stream scaling nio broadcast pubsub rpc batch offload timers backpressure sweep handshake ciphers service links blast churn flood
+ */
+
+package org.miktim.websockettest;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JvmTestRunner {
+    static String KEY_FILE = "certificates/keypair.p12;qwerty"; // PKCS12
+
+    static Thread createTest(TestContext context, String test) {
+        String[] sa = test.split(":", 2);
+        String name = sa[0];
+        TestOptions options = new TestOptions(sa.length > 1 ? sa[1] : null);
+        switch (name) {
+            case ("env"):
+                return new WsEnvironment(context);
+            case ("ws"):
+                return new WsWssClientServerTest(context, "ws");
+            case ("wss"):
+                return new WsWssClientServerTest(context, "wss");
+            case ("wssclient"):
+                return new WssClientTest(context, options.getBoolean("local", false));
+            case ("server"):
+                return new WsServerTest(context);
+            case ("stress"):
+                return new WsClientServerStressTest(context);
+            case ("load"):
+                return new WsLoadTest(context, options);
+            case ("rate"):
+                return new WsRateTest(context, options);
+            case ("latency"):
+                return new WsLatencyTest(context, options);
+            case ("alloc"):
+                return new WsAllocationTest(context, options);
+            case ("stream"):
+                return new WsStreamTest(context, options);
+            case ("scaling"):
+                return new WsScalingTest(context, options);
+            case ("nio"):
+                return new WsNioLoadDriver(context, options);
+            case ("broadcast"):
+                return new WsBroadcastTest(context, options);
+            case ("pubsub"):
+                return new WsPubSubTest(context, options);
+            case ("rpc"):
+                return new WsRpcTest(context, options);
+            case ("batch"):
+                return new WsBatchTest(context, options);
+            case ("offload"):
+                return new WsOffloadTest(context, options);
+            case ("timers"):
+                return new WsTimerTest(context, options);
+            case ("backpressure"):
+                return new WsBackpressureTest(context, options);
+            case ("sweep"):
+                return new WsPayloadSweep(context, options);
+            case ("handshake"):
+                return new WsHandshakeTest(context, options);
+            case ("ciphers"):
+                return new WsCipherSuiteTest(context, options);
+            case ("service"):
+                return new WsServiceLoadTest(context, options);
+            case ("links"):
+                return new WsLinkTest(context, options);
+            case ("blast"):
+                return new WsFrameBlaster(context, options);
+            case ("churn"):
+                return new WsChurnTest(context, options);
+            case ("flood"):
+                return new WsFloodTest(context, options);
+            default:
+                throw new IllegalArgumentException("Unknown test: " + name);
+        }
+    }
+
+    static void usage() {
+        System.out.println("Usage: JvmTestRunner [-o outFile] [-k keyFile;password] [-n netProfile] test[:key=value,...]..."
+                + "\r\nTests: env ws wss wssclient server stress load rate latency alloc stream scaling nio broadcast pubsub rpc batch offload timers backpressure sweep handshake ciphers service links blast churn flood");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        PrintStream out = new PrintStream(
+                new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        String keyInfo = KEY_FILE;
+        List<String> tests = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                out = new PrintStream(new FileOutputStream(args[++i]), true, "UTF-8");
+            } else if (args[i].equals("-k") && i + 1 < args.length) {
+                keyInfo = args[++i];
+            } else if (args[i].equals("-n") && i + 1 < args.length) {
+                WsNetProxy.setGlobalProfile(WsNetProxy.Profile.get(args[++i]));
+            } else if (args[i].startsWith("-")) {
+                usage();
+            } else {
+                tests.add(args[i]);
+            }
+        }
+        if (tests.isEmpty()) usage();
+
+        TestContext context = new JvmTestContext(out, keyInfo);
+        for (String name : tests) {
+            Thread test = createTest(context, name);
+            test.start();
+            test.join();
+            if (WsNetProxy.getGlobalProfile() != null) {
+                out.println("Network profile: " + WsNetProxy.getGlobalProfile());
+                WsNetProxy.closeRoutes();
+            }
+        }
+        out.close();
+        System.exit(0); // stop the rest of the non-daemon timers and connections
+    }
+}
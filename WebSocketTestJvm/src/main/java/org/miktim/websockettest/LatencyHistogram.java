@@ -0,0 +1,115 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * HdrHistogram-style log-linear histogram of non-negative long values
+ * (nanoseconds). Each power of two is split into 64 sub-buckets:
+ * the value precision is better than 1.6% over the whole range.
+ * Recording is thread safe and does not allocate.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // 128
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;   // 64
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF + SUB_BUCKET_COUNT;
+
+    final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    final AtomicLong totalCount = new AtomicLong();
+    final AtomicLong totalValue = new AtomicLong();
+    final AtomicLong maxValue = new AtomicLong();
+
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_HALF - 1;
+        return (long) (index % SUB_BUCKET_HALF + SUB_BUCKET_HALF) << shift;
+    }
+
+    static long highestValue(int index) {
+        return index + 1 < BUCKETS ? lowestValue(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        long max;
+        while (value > (max = maxValue.get())) {
+            if (maxValue.compareAndSet(max, value)) break;
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    // highest value of the bucket that contains the percentile (0..100)
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(highestValue(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.counts.get(i);
+            if (n != 0) counts.addAndGet(i, n);
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalValue.addAndGet(other.totalValue.get());
+        long max;
+        long value = other.maxValue.get();
+        while (value > (max = maxValue.get())) {
+            if (maxValue.compareAndSet(max, value)) break;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    // "p50 p99 p99.9 max" in milliseconds
+    public String percentiles() {
+        return String.format("p50 %s p99 %s p99.9 %s max %s ms",
+                millis(getValueAtPercentile(50)),
+                millis(getValueAtPercentile(99)),
+                millis(getValueAtPercentile(99.9)),
+                millis(getMaxValue()));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Bounded lock-free log buffer: many writers (test threads), one reader
+ * (console). offer() does not block or allocate, when the buffer is full
+ * the message is dropped and counted.
+ */
+public class LogRingBuffer {
+    // log(null) marker: clear console
+    public static final String CLEAR = new String("");
+
+    final AtomicReferenceArray<String> slots;
+    final int mask;
+    final AtomicLong tail = new AtomicLong(); // next slot to write
+    volatile long head = 0;                   // next slot to read
+    final AtomicLong dropped = new AtomicLong();
+
+    // capacity is rounded up to a power of two
+    public LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public boolean offer(String msg) {
+        if (msg == null) msg = CLEAR;
+        long t;
+        do {
+            t = tail.get();
+            if (t - head >= slots.length()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.set((int) t & mask, msg);
+        return true;
+    }
+
+    // single reader. Returns the number of the drained messages
+    public int drain(List<String> to, int maxMessages) {
+        long h = head;
+        int n = 0;
+        while (n < maxMessages && h < tail.get()) {
+            int i = (int) h & mask;
+            String msg = slots.get(i);
+            if (msg == null) break; // the writer has not published it yet
+            slots.lazySet(i, null);
+            to.add(msg);
+            head = ++h;
+            n++;
+        }
+        return n;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Incoming message read into a pooled buffer instead of a fixed
+ * MAX_MESSAGE_LENGTH array. The buffer starts small and grows through
+ * the pool size classes. The message is also an InputStream over its
+ * content: it can be sent back as is with conn.send(message, isText).
+ * Call release() after dispatch.
+ *
+ * Note: WsMessage overrides read() only, read(byte[],int,int) of the
+ * InputStream copies it byte by byte (no allocation, though).
+ */
+public class PooledMessage extends InputStream {
+    static final int INITIAL_SIZE = 1024;
+
+    final BufferPool pool;
+    final int maxLength;
+    byte[] buffer;
+    int length;
+    int position;
+    int repeats;
+    boolean isText;
+
+    // the length is limited by WsParameters.setMaxMessageLength only
+    public PooledMessage(BufferPool pool) {
+        this(pool, Integer.MAX_VALUE - 1);
+    }
+
+    public PooledMessage(BufferPool pool, int maxLength) {
+        this.pool = pool;
+        this.maxLength = maxLength;
+    }
+
+    // false: the message is longer than maxLength (the rest is not read)
+    public boolean read(InputStream is, boolean isText) throws IOException {
+        release();
+        this.isText = isText;
+        buffer = pool.acquire(Math.min(INITIAL_SIZE, maxLength + 1));
+        while (true) {
+            int limit = Math.min(buffer.length, maxLength + 1);
+            if (length == limit) {
+                if (length > maxLength) return false;
+                int b = is.read(); // exact fit: do not grow
+                if (b < 0) return true;
+                byte[] grown = pool.acquire((int) Math.min(length * 2L, maxLength + 1));
+                System.arraycopy(buffer, 0, grown, 0, length);
+                pool.release(buffer);
+                buffer = grown;
+                buffer[length++] = (byte) b;
+                continue;
+            }
+            int n = is.read(buffer, length, limit - length);
+            if (n < 0) return true;
+            length += n;
+        }
+    }
+
+    public boolean isText() {
+        return isText;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // ASCII prefix test without decoding the message
+    public boolean startsWith(String prefix) {
+        if (prefix.length() > length) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[i] != (byte) prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public String asString() throws IOException {
+        return new String(buffer, 0, length, "UTF-8");
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    // rewinds the stream
+    public PooledMessage rewind() {
+        return rewind(1);
+    }
+
+    // the stream repeats the content (message + message) without copying
+    public PooledMessage rewind(int times) {
+        position = 0;
+        repeats = times - 1;
+        return this;
+    }
+
+    boolean nextRepeat() {
+        if (position < length) return true;
+        if (repeats <= 0 || length == 0) return false;
+        repeats--;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public int read() {
+        return nextRepeat() ? buffer[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) return 0;
+        if (!nextRepeat()) return -1;
+        len = Math.min(len, length - position);
+        System.arraycopy(buffer, position, b, off, len);
+        position += len;
+        return len;
+    }
+
+    @Override
+    public int available() {
+        return length - position + Math.max(0, repeats) * length;
+    }
+
+    // returns the buffer to the pool
+    public void release() {
+        if (buffer != null) pool.release(buffer);
+        buffer = null;
+        length = 0;
+        position = 0;
+        repeats = 0;
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * WebSocket test. MIT (c) 2023 miktim@mail.ru, 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.io.File;
+
+/*
+ * The platform the tests are running on: Android app or plain JVM.
+ */
+public interface TestContext {
+    // result sink, null message clears the console
+    void log(String msg);
+
+    // TLS key store for the wss servers (and the trust store of the wss clients)
+    File getKeyFile();
+
+    String getKeyPassword();
+
+    // Android API level, 0 on the JVM
+    int getAndroidApi();
+
+    // show the page to the user (default browser)
+    void openUrl(String url);
+}
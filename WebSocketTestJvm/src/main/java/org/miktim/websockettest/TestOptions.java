@@ -0,0 +1,70 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.util.Properties;
+
+/*
+ * Test options: "key=value,key=value..."
+ * Runner: test:key=value,key=value...
+ */
+public class TestOptions extends Properties {
+    private static final long serialVersionUID = 1L;
+
+    public TestOptions() {
+        super();
+    }
+
+    public TestOptions(String options) {
+        super();
+        if (options == null) return;
+        for (String option : options.split(",")) {
+            if (option.isEmpty()) continue;
+            String[] kv = option.split("=", 2);
+            setProperty(kv[0].trim(), kv.length > 1 ? kv[1].trim() : "true");
+        }
+    }
+
+    public TestOptions set(String key, Object value) {
+        setProperty(key, String.valueOf(value));
+        return this;
+    }
+
+    public String getString(String key, String defaultValue) {
+        return getProperty(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    // list of ints: "16/1024/65536"
+    public int[] getInts(String key, int[] defaultValue) {
+        String value = getProperty(key);
+        if (value == null) return defaultValue;
+        String[] sa = value.split("/");
+        int[] ia = new int[sa.length];
+        for (int i = 0; i < sa.length; i++) {
+            ia[i] = Integer.parseInt(sa[i].trim());
+        }
+        return ia;
+    }
+
+    public String[] getStrings(String key, String[] defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : value.split("/");
+    }
+}
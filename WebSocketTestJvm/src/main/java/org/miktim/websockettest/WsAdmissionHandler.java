@@ -0,0 +1,136 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Handler decorator: admission control for the connection floods.
+ * A token bucket (rate connections/s, burst tokens) limits the new
+ * connections, maxConnections limits the admitted live ones.
+ * The excess connections are closed in onOpen with 1013 (Try Again Later)
+ * and a short reason, the wrapped handler never sees them.
+ * WsParameters.setBacklog answers with 429 before the handshake instead,
+ * but it has no rate limit and counts every live connection.
+ *   new WsAdmissionHandler(handler, 100, 20, 1000) // 100/s, burst 20
+ * rate <= 0, maxConnections < 0: no limit.
+ */
+public class WsAdmissionHandler implements WsServer.Handler {
+    public static final int TRY_AGAIN_LATER = 1013;
+
+    final WsConnection.Handler handler;
+    final double rate; // tokens per nanosecond
+    final double burst;
+    final int maxConnections;
+    final Set<WsConnection> admitted =
+            Collections.newSetFromMap(new ConcurrentHashMap<WsConnection, Boolean>());
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicLong admittedCount = new AtomicLong();
+    final AtomicLong rateRejected = new AtomicLong();
+    final AtomicLong limitRejected = new AtomicLong();
+    double tokens;
+    long lastNanos = System.nanoTime();
+
+    // handler: WsConnection.Handler or WsServer.Handler
+    public WsAdmissionHandler(WsConnection.Handler handler,
+                              double rate, int burst, int maxConnections) {
+        this.handler = handler;
+        this.rate = rate / 1e9;
+        this.burst = Math.max(1, burst);
+        this.maxConnections = maxConnections;
+        tokens = this.burst;
+    }
+
+    synchronized boolean takeToken() {
+        if (rate <= 0) return true;
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastNanos) * rate);
+        lastNanos = now;
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    boolean admit(WsConnection conn) {
+        if (maxConnections >= 0 && active.incrementAndGet() > maxConnections) {
+            active.decrementAndGet();
+            limitRejected.incrementAndGet();
+            conn.close(TRY_AGAIN_LATER, "Busy");
+            return false;
+        }
+        if (!takeToken()) {
+            if (maxConnections >= 0) active.decrementAndGet();
+            rateRejected.incrementAndGet();
+            conn.close(TRY_AGAIN_LATER, "Rate");
+            return false;
+        }
+        admitted.add(conn);
+        admittedCount.incrementAndGet();
+        return true;
+    }
+
+    public long getAdmitted() {
+        return admittedCount.get();
+    }
+
+    // rejected by the token bucket
+    public long getRateRejected() {
+        return rateRejected.get();
+    }
+
+    // rejected by maxConnections
+    public long getLimitRejected() {
+        return limitRejected.get();
+    }
+
+    public int getActive() {
+        return admitted.size();
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        if (admit(conn)) handler.onOpen(conn, subProtocol);
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        if (admitted.contains(conn)) handler.onMessage(conn, msg);
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        if (admitted.contains(conn)) handler.onError(conn, e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        if (admitted.remove(conn)) {
+            if (maxConnections >= 0) active.decrementAndGet();
+            handler.onClose(conn, status);
+        }
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStart(server, wsp);
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStop(server, e);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * WebSocket echo allocation report. MIT (c) 2025 agent@local
+ *
+ * Steady-state echo with the plain handlers (asString/asByteArray)
+ * and with the pooled receive buffers (BufferPool, PooledMessage).
+ * Reports the bytes allocated per round trip by all threads
+ * and the GC collections of the measured interval.
+ * The rest of the pooled mode allocation is made by the websocket jar:
+ * the send buffer (payloadBufferLength) and the received frame payloads.
+ * Desktop/server JVM only (GcReport).
+ *
+ * Options (runner: alloc:key=value,...):
+ *   modes=plain/pooled messages=100000 warmup=20000 size=1024
+ *   binary=true scheme=ws nodelay=true buffer=32768 (setPayloadBufferLength)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class WsAllocationTest extends Thread {
+    final TestContext context;
+    final String[] modes;
+    final int messages;
+    final int warmup;
+    final int messageSize;
+    final boolean binary;
+    final String scheme;
+    final boolean tcpNoDelay;
+    final int payloadBufferLength;
+
+    final Semaphore echoed = new Semaphore(0);
+    BufferPool clientPool;
+
+    WsAllocationTest(TestContext context, TestOptions options) {
+        this.context = context;
+        modes = options.getStrings("modes", new String[]{"plain", "pooled"});
+        messages = options.getInt("messages", 100000);
+        warmup = options.getInt("warmup", 20000);
+        messageSize = options.getInt("size", 1024);
+        binary = options.getBoolean("binary", true);
+        scheme = options.getString("scheme", "ws");
+        tcpNoDelay = options.getBoolean("nodelay", true);
+        payloadBufferLength = options.getInt("buffer", 32768);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            if (clientPool == null) {
+                if (msg.isText()) msg.asString();
+                else msg.asByteArray();
+            } else {
+                PooledMessage message = new PooledMessage(clientPool);
+                try {
+                    message.read(msg, msg.isText());
+                } catch (IOException e) {
+                    ws_log("Client read error: " + e);
+                } finally {
+                    message.release();
+                }
+            }
+            echoed.release();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            echoed.release(); // do not wait for the lost echo
+        }
+    };
+
+    boolean roundTrips(WsConnection conn, int count, byte[] payload, String text)
+            throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            if (!conn.isOpen()) return false;
+            if (binary) conn.send(payload);
+            else conn.send(text);
+            if (!echoed.tryAcquire(30, TimeUnit.SECONDS)) return false;
+        }
+        return true;
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs echo allocation report"
+                + "\r\nModes: " + Arrays.toString(modes)
+                + "\r\nRound trips: " + messages + " (+" + warmup + " warmup)"
+                + " Message size: " + messageSize + (binary ? " binary" : " text")
+                + " Payload buffer: " + payloadBufferLength
+                + "\r\nScheme: " + scheme + (tcpNoDelay ? " TCP_NODELAY" : "") + "\r\n");
+        byte[] payload = WsLoadTest.payload(messageSize);
+        char[] ca = new char[messageSize];
+        Arrays.fill(ca, 'x');
+        String text = new String(ca);
+        StringBuilder table = new StringBuilder(String.format("%-7s %10s %9s  %s",
+                "mode", "msgs/s", "MB/s", "allocation (all threads)"));
+        for (String mode : modes) {
+            boolean pooled = mode.equals("pooled");
+            WebSocket webSocket = null;
+            try {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                if (scheme.equals("wss"))
+                    webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+                WsParameters wsp = new WsParameters()
+                        .setMaxMessageLength(Math.max(messageSize, 125))
+                        .setPayloadBufferLength(payloadBufferLength)
+                        .setConnectionSoTimeout(10000, true);
+                BufferPool serverPool = pooled ? new BufferPool(messageSize, 16) : null;
+                clientPool = pooled ? new BufferPool(messageSize, 16) : null;
+                WsServer.Handler handler =
+                        new WsEchoHandler(context, tcpNoDelay).setBufferPool(serverPool);
+                WsServer server = scheme.equals("wss")
+                        ? webSocket.startSecureServer(0, handler, wsp)
+                        : webSocket.startServer(0, handler, wsp);
+                server.ready();
+                WsConnection conn = webSocket.connect(
+                        WsNetProxy.route(scheme + "://localhost:" + server.getPort()), clientHandler, wsp).ready();
+                echoed.drainPermits();
+                if (!roundTrips(conn, warmup, payload, text)) {
+                    ws_log("Connection lost: " + conn.getStatus());
+                    continue;
+                }
+                System.gc();
+                GcReport gc = new GcReport().start();
+                long startNanos = System.nanoTime();
+                if (!roundTrips(conn, messages, payload, text)) {
+                    ws_log("Connection lost: " + conn.getStatus());
+                    continue;
+                }
+                double seconds = (System.nanoTime() - startNanos) / 1e9;
+                String line = String.format("%-7s %10.0f %9.2f  %s",
+                        mode, messages / seconds,
+                        2.0 * messages * messageSize / seconds / 1e6, gc.report(messages));
+                ws_log(line);
+                if (pooled) ws_log("  server " + serverPool + "\r\n  client " + clientPool);
+                table.append("\r\n").append(line);
+            } catch (Throwable e) {
+                ws_log("Unexpected: " + e);
+                e.printStackTrace();
+            } finally {
+                if (webSocket != null) webSocket.closeAll("Completed");
+            }
+        }
+        ws_log("\r\n" + table);
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * WebSocket backpressure benchmark. MIT (c) 2025 agent@local
+ *
+ * The clients send as fast as they are allowed to consumers of
+ * different speeds (work microseconds per message). Modes:
+ *   flood  - plain send (stress test subprotocol "2"): the server
+ *            message queue overflows, 1008 close, the client reconnects
+ *   credit - WsCreditSender/WsCreditReceiver credit window
+ *   aimd   - the credit window with the AIMD congestion window
+ * Reports the delivered (consumed) messages/s against the closes/s.
+ *
+ * Options (runner: backpressure:key=value,...):
+ *   modes=flood/credit/aimd work=0/200/1000/5000 (us) connections=4
+ *   duration=5 (s) maxMessages=3 (server queue) grant=1 size=64
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class WsBackpressureTest extends Thread {
+    final TestContext context;
+    final String[] modes;
+    final int[] works;
+    final int connections;
+    final int duration;
+    final int maxMessages;
+    final int grantEvery;
+    final int messageSize;
+
+    final AtomicLong delivered = new AtomicLong();
+    final AtomicLong closes = new AtomicLong();
+    volatile long workNanos;
+    volatile long deadline;
+
+    WsBackpressureTest(TestContext context, TestOptions options) {
+        this.context = context;
+        modes = options.getStrings("modes", new String[]{"flood", "credit", "aimd"});
+        works = options.getInts("work", new int[]{0, 200, 1000, 5000});
+        connections = options.getInt("connections", 4);
+        duration = options.getInt("duration", 5);
+        maxMessages = options.getInt("maxMessages", 3);
+        grantEvery = options.getInt("grant", 1);
+        messageSize = options.getInt("size", 64);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    final WsServer.Handler consumer = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asByteArray();
+            long end = System.nanoTime() + workNanos;
+            long now;
+            while ((now = System.nanoTime()) < end) LockSupport.parkNanos(end - now);
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            // 1008 "Deque full", or 1006 when the client is still sending
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY) {
+                closes.incrementAndGet();
+            }
+        }
+    };
+
+    // sends until the deadline, reconnects after the close
+    class Client extends Thread {
+        final WebSocket webSocket;
+        final String address;
+        final String mode;
+        final WsParameters wsp;
+        double window = 0;
+
+        Client(WebSocket webSocket, String address, String mode, WsParameters wsp) {
+            this.webSocket = webSocket;
+            this.address = address;
+            this.mode = mode;
+            this.wsp = wsp;
+        }
+
+        @Override
+        public void run() {
+            byte[] message = new byte[messageSize];
+            while (System.currentTimeMillis() < deadline) {
+                WsConnection conn = null;
+                try {
+                    if (mode.equals("flood")) {
+                        conn = webSocket.connect(address, clientHandler, wsp).ready();
+                        while (conn.isOpen() && System.currentTimeMillis() < deadline) {
+                            conn.send(message);
+                        }
+                    } else {
+                        WsCreditSender sender = new WsCreditSender(mode.equals("aimd"), clientHandler);
+                        conn = webSocket.connect(address, sender, wsp).ready();
+                        while (conn.isOpen() && System.currentTimeMillis() < deadline) {
+                            sender.send(message);
+                        }
+                        window = sender.getWindow();
+                    }
+                } catch (Throwable e) {
+                    // closed by the server: reconnect
+                }
+                if (conn != null && conn.isOpen()) conn.close("Completed");
+            }
+        }
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs backpressure benchmark"
+                + "\r\nModes: " + Arrays.toString(modes)
+                + " Consumer work: " + Arrays.toString(works) + " us/message"
+                + "\r\nConnections: " + connections + " Server maxMessages: " + maxMessages
+                + " Credit grant every: " + grantEvery
+                + " Duration: " + duration + " s\r\n");
+        StringBuilder table = new StringBuilder(String.format("%6s %-7s %12s %9s %7s",
+                "work", "mode", "delivered/s", "closes/s", "window"));
+        for (int work : works) {
+            for (String mode : modes) {
+                WebSocket webSocket = null;
+                try {
+                    webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                    WsParameters serverWsp = new WsParameters()
+                            .setConnectionSoTimeout(20000, true)
+                            .setMaxMessages(maxMessages);
+                    WsParameters clientWsp = new WsParameters()
+                            .setConnectionSoTimeout(20000, true)
+                            .setMaxMessages(100); // the credits
+                    WsServer.Handler handler = mode.equals("flood")
+                            ? consumer : new WsCreditReceiver(consumer, grantEvery);
+                    WsServer server = webSocket.startServer(0, handler, serverWsp);
+                    server.ready();
+                    workNanos = work * 1000L;
+                    delivered.set(0);
+                    closes.set(0);
+                    long startNanos = System.nanoTime();
+                    deadline = System.currentTimeMillis() + duration * 1000L;
+                    List<Client> clients = new ArrayList<>();
+                    for (int i = 0; i < connections; i++) {
+                        clients.add(new Client(webSocket, WsNetProxy.route("ws://localhost:" + server.getPort()),
+                                mode, clientWsp));
+                    }
+                    for (Client client : clients) client.start();
+                    for (Client client : clients) client.join();
+                    double seconds = (System.nanoTime() - startNanos) / 1e9;
+                    double window = 0;
+                    for (Client client : clients) window += client.window / connections;
+                    String line = String.format("%6d %-7s %12.0f %9.1f %7s",
+                            work, mode, delivered.get() / seconds, closes.get() / seconds,
+                            mode.equals("flood") ? "-" : String.format("%.1f", window));
+                    ws_log(line);
+                    table.append("\r\n").append(line);
+                } catch (Throwable e) {
+                    ws_log("Unexpected: " + e);
+                    e.printStackTrace();
+                }
+                if (webSocket != null) webSocket.closeAll("Completed");
+            }
+        }
+        ws_log("\r\n" + table);
+        ws_log("(work: consumer us/message; window: the mean final send window)");
+        ws_log("\r\nTest completed.");
+    }
+}
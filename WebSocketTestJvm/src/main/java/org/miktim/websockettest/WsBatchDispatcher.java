@@ -0,0 +1,96 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+
+/*
+ * Unpacks the WsBatchSender batches: every entry of a binary message
+ * is passed to the Receiver in the batch order. The text messages and
+ * the connection events go to the wrapped handler unchanged.
+ * The library WsMessage can not be constructed outside its package,
+ * so the unpacked messages are delivered as buffer slices.
+ */
+public class WsBatchDispatcher implements WsServer.Handler {
+    public interface Receiver {
+        // buf is valid during the call only
+        void onMessage(WsConnection conn, byte[] buf, int off, int len, boolean isText);
+    }
+
+    final WsConnection.Handler handler;
+    final Receiver receiver;
+
+    // handler: WsConnection.Handler or WsServer.Handler
+    public WsBatchDispatcher(WsConnection.Handler handler, Receiver receiver) {
+        this.handler = handler;
+        this.receiver = receiver;
+    }
+
+    // returns the number of the entries
+    public static int unpack(WsConnection conn, byte[] batch, int length, Receiver receiver)
+            throws IOException {
+        int pos = 0;
+        int entries = 0;
+        while (pos < length) {
+            if (length - pos < WsBatchSender.ENTRY_HEADER) throw new IOException("Truncated batch");
+            boolean isText = batch[pos] == WsBatchSender.TEXT;
+            int len = ((batch[pos + 1] & 0xFF) << 24) | ((batch[pos + 2] & 0xFF) << 16)
+                    | ((batch[pos + 3] & 0xFF) << 8) | (batch[pos + 4] & 0xFF);
+            pos += WsBatchSender.ENTRY_HEADER;
+            if (len < 0 || len > length - pos) throw new IOException("Truncated batch");
+            receiver.onMessage(conn, batch, pos, len, isText);
+            pos += len;
+            entries++;
+        }
+        return entries;
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        handler.onOpen(conn, subProtocol);
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        if (msg.isText()) {
+            handler.onMessage(conn, msg);
+            return;
+        }
+        byte[] batch = msg.asByteArray();
+        try {
+            unpack(conn, batch, batch.length, receiver);
+        } catch (IOException e) {
+            conn.close(WsStatus.UNSUPPORTED_DATA, "Invalid batch");
+        }
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        handler.onError(conn, e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        handler.onClose(conn, status);
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStart(server, wsp);
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStop(server, e);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Opt-in coalescing sender: packs the small messages into one binary
+ * batch message (one frame header, mask and socket write per batch).
+ * Batch entry: type byte (0 binary, 1 text), 4 bytes big-endian length,
+ * payload. The batch is sent when it reaches maxBatchBytes or when its
+ * first message is flushNanos old (flusher thread). maxBatchBytes = 0:
+ * no batching, the text messages are sent as is, the binary ones
+ * as batches of one (a binary message is always a batch).
+ * The receiving side unpacks the batches with WsBatchDispatcher.
+ */
+public class WsBatchSender {
+    static final int ENTRY_HEADER = 5;
+    static final byte BINARY = 0;
+    static final byte TEXT = 1;
+
+    final WsConnection conn;
+    final int maxBatchBytes;
+    final long flushNanos;
+    final Object sendLock = new Object();
+    byte[] batch;
+    byte[] spare;
+    int length = 0;
+    long firstNanos;
+    volatile boolean closed = false;
+    final AtomicLong messages = new AtomicLong();
+    final AtomicLong batches = new AtomicLong();
+    Thread flusher;
+
+    public WsBatchSender(WsConnection conn, int maxBatchBytes, long flushNanos) {
+        this.conn = conn;
+        this.maxBatchBytes = maxBatchBytes;
+        this.flushNanos = flushNanos;
+        if (maxBatchBytes <= 0) return;
+        batch = new byte[maxBatchBytes];
+        spare = new byte[maxBatchBytes];
+        flusher = new Thread("WsBatchSender-flusher") {
+            @Override
+            public void run() {
+                while (!closed) {
+                    LockSupport.parkNanos(flushNanos);
+                    long first;
+                    synchronized (WsBatchSender.this) {
+                        if (length == 0) continue;
+                        first = firstNanos;
+                    }
+                    if (System.nanoTime() - first >= flushNanos) {
+                        try {
+                            flush();
+                        } catch (IOException e) {
+                            closed = true;
+                        }
+                    }
+                }
+            }
+        };
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void send(String message) throws IOException {
+        if (maxBatchBytes <= 0) {
+            conn.send(message);
+            messages.incrementAndGet();
+            return;
+        }
+        byte[] payload = message.getBytes("UTF-8");
+        send(payload, 0, payload.length, true);
+    }
+
+    public void send(byte[] message) throws IOException {
+        send(message, 0, message.length, false);
+    }
+
+    public void send(byte[] message, int off, int len, boolean isText) throws IOException {
+        if (closed) throw new IOException("Sender closed");
+        messages.incrementAndGet();
+        if (maxBatchBytes <= 0 && isText) {
+            conn.send(new ByteArrayInputStream(message, off, len), true);
+            return;
+        }
+        if (len + ENTRY_HEADER > maxBatchBytes) { // batch of one
+            flush();
+            byte[] single = new byte[len + ENTRY_HEADER];
+            putEntry(single, 0, message, off, len, isText);
+            synchronized (sendLock) {
+                conn.send(single);
+                batches.incrementAndGet();
+            }
+            return;
+        }
+        while (true) {
+            synchronized (this) {
+                if (length + len + ENTRY_HEADER <= maxBatchBytes) {
+                    if (length == 0) firstNanos = System.nanoTime();
+                    length = putEntry(batch, length, message, off, len, isText);
+                    if (length + ENTRY_HEADER < maxBatchBytes) return;
+                    break; // no room for the next message
+                }
+            }
+            flush(); // no room for this message
+        }
+        flush();
+    }
+
+    static int putEntry(byte[] buf, int pos, byte[] message, int off, int len, boolean isText) {
+        buf[pos++] = isText ? TEXT : BINARY;
+        buf[pos++] = (byte) (len >>> 24);
+        buf[pos++] = (byte) (len >>> 16);
+        buf[pos++] = (byte) (len >>> 8);
+        buf[pos++] = (byte) len;
+        System.arraycopy(message, off, buf, pos, len);
+        return pos + len;
+    }
+
+    // sends the pending batch, if any
+    public void flush() throws IOException {
+        synchronized (sendLock) {
+            byte[] full;
+            int len;
+            synchronized (this) {
+                if (length == 0) return;
+                full = batch;
+                len = length;
+                batch = spare;
+                spare = full;
+                length = 0;
+            }
+            conn.send(new ByteArrayInputStream(full, 0, len), false);
+            batches.incrementAndGet();
+        }
+    }
+
+    public void close() {
+        try {
+            flush();
+        } catch (IOException ignore) {
+        }
+        closed = true;
+        if (flusher != null) flusher.interrupt();
+    }
+
+    public long getMessages() {
+        return messages.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+}
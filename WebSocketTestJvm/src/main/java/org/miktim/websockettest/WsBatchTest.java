@@ -0,0 +1,218 @@
+/*
+ * WebSocket message coalescing benchmark. MIT (c) 2025 agent@local
+ *
+ * Small text messages echoed over one connection, both sides send
+ * through WsBatchSender (batch=0: every message is a frame) and receive
+ * through WsBatchDispatcher. The messages carry the send System.nanoTime():
+ * reports messages/s, messages per batch and the round trip latency
+ * (the cost of waiting for the batch to fill or for the flush timer).
+ *
+ * Options (runner: batch:key=value,...):
+ *   batches=0/1024/4096/16384 (max batch bytes) flush=200 (us)
+ *   messages=100000 size=32 rate=0 (messages/s, 0: unlimited) nodelay=true
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class WsBatchTest extends Thread {
+    final TestContext context;
+    final int[] batchSizes;
+    final long flushNanos;
+    final int messages;
+    final int messageSize;
+    final int rate;
+    final boolean tcpNoDelay;
+
+    final AtomicLong received = new AtomicLong();
+    LatencyHistogram latency;
+    final AtomicLong errors = new AtomicLong();
+
+    WsBatchTest(TestContext context, TestOptions options) {
+        this.context = context;
+        batchSizes = options.getInts("batches", new int[]{0, 1024, 4096, 16384});
+        flushNanos = options.getLong("flush", 200) * 1000;
+        messages = options.getInt("messages", 100000);
+        messageSize = options.getInt("size", 32);
+        rate = options.getInt("rate", 0);
+        tcpNoDelay = options.getBoolean("nodelay", true);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // echoes every message through the connection WsBatchSender
+    class EchoServer implements WsServer.Handler, WsBatchDispatcher.Receiver {
+        final int batchSize;
+        final ConcurrentHashMap<WsConnection, WsBatchSender> senders = new ConcurrentHashMap<>();
+
+        EchoServer(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, byte[] buf, int off, int len, boolean isText) {
+            try {
+                senders.get(conn).send(buf, off, len, isText);
+            } catch (IOException e) {
+                if (errors.incrementAndGet() <= 10) ws_log("Echo server send error: " + e);
+            }
+        }
+
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+            senders.put(conn, new WsBatchSender(conn, batchSize, flushNanos));
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            try {
+                senders.get(conn).send(msg.asString());
+            } catch (IOException e) {
+                if (errors.incrementAndGet() <= 10) ws_log("Echo server send error: " + e);
+            }
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            if (errors.incrementAndGet() <= 10) ws_log("Echo server onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            WsBatchSender sender = senders.remove(conn);
+            if (sender != null) sender.close();
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    }
+
+    // the stamp is the leading decimal digits
+    void record(byte[] buf, int off, int len) {
+        long now = System.nanoTime();
+        long stamp = 0;
+        for (int i = off; i < off + len && buf[i] != ','; i++) stamp = stamp * 10 + (buf[i] - '0');
+        latency.record(now - stamp);
+        received.incrementAndGet();
+    }
+
+    final WsBatchDispatcher.Receiver clientReceiver = new WsBatchDispatcher.Receiver() {
+        @Override
+        public void onMessage(WsConnection conn, byte[] buf, int off, int len, boolean isText) {
+            record(buf, off, len);
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            byte[] payload = msg.asByteArray();
+            record(payload, 0, payload.length);
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            if (errors.incrementAndGet() <= 10) ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY
+                    && errors.incrementAndGet() <= 10) ws_log("Client closed: " + status);
+        }
+    };
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs message coalescing benchmark"
+                + "\r\nBatch sizes: " + Arrays.toString(batchSizes)
+                + " Flush timer: " + flushNanos / 1000 + " us"
+                + "\r\nMessages: " + messages + " x " + messageSize + " bytes"
+                + " Rate: " + (rate > 0 ? rate + " messages/s" : "unlimited")
+                + (tcpNoDelay ? " TCP_NODELAY" : "") + "\r\n");
+        char[] ca = new char[Math.max(0, messageSize - 20)];
+        Arrays.fill(ca, 'x');
+        String padding = new String(ca);
+        StringBuilder table = new StringBuilder(String.format("%6s %10s %8s %9s %9s %9s",
+                "batch", "msgs/s", "msgs/bat", "p50 ms", "p99 ms", "max ms"));
+        for (int batchSize : batchSizes) {
+            WebSocket webSocket = null;
+            try {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                WsParameters wsp = new WsParameters()
+                        .setConnectionSoTimeout(20000, true)
+                        .setMaxMessages(10000)
+                        .setMaxMessageLength(Math.max(125, batchSize + messageSize + 64));
+                EchoServer echo = new EchoServer(batchSize);
+                WsServer server = webSocket.startServer(0, new WsBatchDispatcher(echo, echo), wsp);
+                server.ready();
+                WsConnection conn = webSocket.connect(WsNetProxy.route("ws://localhost:" + server.getPort()),
+                        new WsBatchDispatcher(clientHandler, clientReceiver), wsp).ready();
+                WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+                WsBatchSender sender = new WsBatchSender(conn, batchSize, flushNanos);
+                latency = new LatencyHistogram();
+                received.set(0);
+                long intervalNanos = rate > 0 ? 1000000000L / rate : 0;
+                long startNanos = System.nanoTime();
+                long next = startNanos;
+                for (int i = 0; i < messages && conn.isOpen(); i++) {
+                    if (intervalNanos > 0) {
+                        long now;
+                        while ((now = System.nanoTime()) < next) LockSupport.parkNanos(next - now);
+                        next += intervalNanos;
+                    }
+                    sender.send(System.nanoTime() + "," + padding);
+                }
+                long deadline = System.currentTimeMillis() + 30000;
+                while (received.get() < messages && conn.isOpen()
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                double seconds = (System.nanoTime() - startNanos) / 1e9;
+                String line = String.format("%6d %10.0f %8.1f %9s %9s %9s",
+                        batchSize, received.get() / seconds,
+                        batchSize > 0 ? (double) sender.getMessages() / Math.max(1, sender.getBatches()) : 1.0,
+                        LatencyHistogram.millis(latency.getValueAtPercentile(50)),
+                        LatencyHistogram.millis(latency.getValueAtPercentile(99)),
+                        LatencyHistogram.millis(latency.getMaxValue()));
+                if (received.get() < messages) line += " lost " + (messages - received.get());
+                ws_log(line);
+                table.append("\r\n").append(line);
+                sender.close();
+                conn.close("Completed");
+            } catch (Throwable e) {
+                ws_log("Unexpected: " + e);
+                e.printStackTrace();
+            }
+            if (webSocket != null) webSocket.closeAll("Completed");
+        }
+        ws_log("\r\n" + table);
+        if (errors.get() > 0) ws_log("Errors: " + errors.get());
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * WebSocket broadcast fan-out benchmark. MIT (c) 2025 agent@local
+ *
+ * The server pushes one message to every connection of
+ * WsServer.listConnections(): a sequential conn.send() loop
+ * or the parallel WsBroadcaster. Measures the time to the last delivery
+ * (the last subscriber onMessage) of each broadcast and the time
+ * the broadcasting thread is held, as the subscriber count grows.
+ * slow=N: the first N subscribers sleep slowDelay ms per message
+ * (they block the sender when the socket buffers are full: use large sizes).
+ * The stalled mode is the parallel one with stalled=N more subscribers,
+ * raw sockets that complete the handshake and never read (the library
+ * client reads ahead into memory), and messages + maxPending broadcasts
+ * of at least 64 KB: with N >= threads every pool thread blocks in their
+ * sends until WsBroadcaster evicts them.
+ * The slow and stalled subscribers are excluded from the time to the last
+ * delivery.
+ *
+ * Options (runner: broadcast:key=value,...):
+ *   subscribers=10/100/500/1000/5000 messages=20 size=1024
+ *   modes=sequential/parallel/stalled threads=8 maxPending=64 maxSend=1000 (ms)
+ *   (WsBroadcaster)
+ *   slow=0 slowDelay=100 (ms) stalled=threads
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsBroadcastTest extends Thread {
+    static final int STALLED_SIZE = 65536; // the stalled mode message size, at least
+    static final int STALLED_BUFFER = 4096; // the stalled sockets receive buffer
+
+    final TestContext context;
+    final int[] subscribers;
+    final int messages;
+    final int messageSize;
+    final String[] modes;
+    final int threads;
+    final int maxPending;
+    final int maxSend;
+    final int slow;
+    final int slowDelay;
+    final int stalled;
+
+    volatile int current = -1; // broadcast sequence number
+    volatile long startNanos;
+    final AtomicInteger delivered = new AtomicInteger();
+    final AtomicLong lastDelivery = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+
+    WsBroadcastTest(TestContext context, TestOptions options) {
+        this.context = context;
+        subscribers = options.getInts("subscribers", new int[]{10, 100, 500, 1000, 5000});
+        messages = options.getInt("messages", 20);
+        messageSize = Math.max(4, options.getInt("size", 1024));
+        modes = options.getStrings("modes", new String[]{"sequential", "parallel", "stalled"});
+        threads = options.getInt("threads", 8);
+        maxPending = options.getInt("maxPending", 64);
+        maxSend = options.getInt("maxSend", 1000);
+        slow = options.getInt("slow", 0);
+        slowDelay = options.getInt("slowDelay", 100);
+        stalled = options.getInt("stalled", threads);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    class Subscriber implements WsConnection.Handler {
+        final boolean isSlow;
+
+        Subscriber(boolean isSlow) {
+            this.isSlow = isSlow;
+        }
+
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            byte[] payload = msg.asByteArray();
+            if (isSlow) {
+                try {
+                    Thread.sleep(slowDelay);
+                } catch (InterruptedException ignore) {
+                }
+                return;
+            }
+            int seq = ((payload[0] & 0xFF) << 24) | ((payload[1] & 0xFF) << 16)
+                    | ((payload[2] & 0xFF) << 8) | (payload[3] & 0xFF);
+            if (seq != current) return;
+            long elapsed = System.nanoTime() - startNanos;
+            long last;
+            while (elapsed > (last = lastDelivery.get())) {
+                if (lastDelivery.compareAndSet(last, elapsed)) break;
+            }
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            if (errors.incrementAndGet() <= 10) ws_log("Subscriber onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (isSlow) return; // evicted
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY
+                    && errors.incrementAndGet() <= 10) ws_log("Subscriber closed: " + status);
+        }
+    }
+
+    WsConnection.Handler serverHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    // time to the last delivery p50 p99 max, sender held p50, broadcasts with lost deliveries
+    String measure(WsServer server, String mode, WsBroadcaster broadcaster, int fast,
+                   int messages, int messageSize) throws InterruptedException {
+        LatencyHistogram lastDeliveries = new LatencyHistogram();
+        LatencyHistogram held = new LatencyHistogram();
+        byte[] payload = WsLoadTest.payload(messageSize);
+        int lost = 0;
+        for (int seq = 0; seq < messages; seq++) {
+            payload[0] = (byte) (seq >>> 24);
+            payload[1] = (byte) (seq >>> 16);
+            payload[2] = (byte) (seq >>> 8);
+            payload[3] = (byte) seq;
+            delivered.set(0);
+            lastDelivery.set(0);
+            WsConnection[] connections = server.listConnections();
+            startNanos = System.nanoTime();
+            current = seq;
+            if (!mode.equals("sequential")) {
+                broadcaster.broadcast(connections, payload.clone()); // the queues keep the reference
+            } else {
+                for (WsConnection conn : connections) {
+                    try {
+                        if (conn.isOpen()) conn.send(payload);
+                    } catch (Throwable ignore) {
+                    }
+                }
+            }
+            held.record(System.nanoTime() - startNanos);
+            long deadline = System.currentTimeMillis() + 30000;
+            while (delivered.get() < fast && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            if (delivered.get() < fast) lost++;
+            lastDeliveries.record(lastDelivery.get());
+        }
+        return String.format("%9s %9s %9s %9s %6d",
+                LatencyHistogram.millis(lastDeliveries.getValueAtPercentile(50)),
+                LatencyHistogram.millis(lastDeliveries.getValueAtPercentile(99)),
+                LatencyHistogram.millis(lastDeliveries.getMaxValue()),
+                LatencyHistogram.millis(held.getValueAtPercentile(50)),
+                lost);
+    }
+
+    // the parallel mode with the stalled subscribers added for the cell
+    String stalledCell(WsServer server, WsBroadcaster broadcaster, int target, int fast)
+            throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        String line;
+        try {
+            for (int i = 0; i < stalled; i++) {
+                Socket socket = new Socket();
+                sockets.add(socket);
+                socket.setReceiveBufferSize(STALLED_BUFFER); // before connect
+                socket.connect(new InetSocketAddress("localhost", server.getPort()), 5000);
+                socket.setSoTimeout(10000);
+                if (!WsFrameBlaster.handshake(socket,
+                        WsFrameBlaster.request(WsNioLoadDriver.KEY, "13", "GET"))) {
+                    throw new IOException("Stalled subscriber: handshake failed");
+                }
+            }
+            while (server.listConnections().length < target + stalled) Thread.sleep(10);
+            int evicted = broadcaster.getSlowConsumers();
+            line = String.format("%6d %-10s %s evicted %d/%d", target, "stalled",
+                    measure(server, "stalled", broadcaster, fast,
+                            messages + maxPending, Math.max(messageSize, STALLED_SIZE)),
+                    broadcaster.getSlowConsumers() - evicted, stalled);
+        } finally {
+            for (Socket socket : sockets) socket.close();
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (server.listConnections().length > target && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return line;
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs broadcast fan-out benchmark"
+                + "\r\nSubscribers: " + Arrays.toString(subscribers)
+                + "\r\nModes: " + Arrays.toString(modes)
+                + " Broadcasts per cell: " + messages + " Message size: " + messageSize
+                + "\r\nParallel: " + threads + " threads, max pending " + maxPending
+                + ", max send " + maxSend + " ms"
+                + (Arrays.asList(modes).contains("stalled")
+                        ? "\r\nStalled subscribers: " + stalled : "")
+                + (slow > 0 ? "\r\nSlow subscribers: " + slow + " (" + slowDelay + " ms per message)" : "")
+                + "\r\n");
+        String header = String.format("%6s %-10s %9s %9s %9s %9s %6s",
+                "subs", "mode", "p50 ms", "p99 ms", "max ms", "held ms", "lost");
+        StringBuilder table = new StringBuilder(header);
+        WebSocket webSocket = null;
+        WsBroadcaster broadcaster = new WsBroadcaster(threads, maxPending, maxSend);
+        try {
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            WsParameters wsp = new WsParameters()
+                    .setHandshakeSoTimeout(20000)
+                    .setConnectionSoTimeout(20000, true)
+                    .setMaxMessageLength(Math.max(messageSize, STALLED_SIZE));
+            WsParameters slowWsp = new WsParameters()
+                    .setHandshakeSoTimeout(20000)
+                    .setConnectionSoTimeout(20000, true)
+                    .setMaxMessageLength(Math.max(messageSize, STALLED_SIZE))
+                    .setMaxMessages(messages * modes.length * subscribers.length + 10);
+            WsServer server = webSocket.startServer(0, serverHandler, wsp);
+            server.ready();
+            String address = WsNetProxy.route("ws://localhost:" + server.getPort());
+            Subscriber slowSubscriber = new Subscriber(true);
+            Subscriber fastSubscriber = new Subscriber(false);
+            int connected = 0;
+            for (int target : subscribers) {
+                for (; connected < target; connected++) {
+                    if (connected < slow) {
+                        webSocket.connect(address, slowSubscriber, slowWsp).ready();
+                    } else {
+                        webSocket.connect(address, fastSubscriber, wsp).ready();
+                    }
+                }
+                while (server.listConnections().length < target) Thread.sleep(10);
+                int fast = target - Math.min(slow, target);
+                for (String mode : modes) {
+                    String line;
+                    if (mode.equals("stalled")) {
+                        line = stalledCell(server, broadcaster, target, fast);
+                    } else {
+                        line = String.format("%6d %-10s %s",
+                                target, mode, measure(server, mode, broadcaster, fast, messages, messageSize));
+                    }
+                    ws_log(line);
+                    table.append("\r\n").append(line);
+                }
+            }
+            ws_log("\r\n" + table);
+            ws_log(String.format("\r\nWsBroadcaster: delivered %d dropped %d failed %d slow consumers %d",
+                    broadcaster.getDelivered(), broadcaster.getDropped(),
+                    broadcaster.getFailed(), broadcaster.getSlowConsumers()));
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        broadcaster.shutdown();
+        if (webSocket != null) webSocket.closeAll("Completed");
+        if (errors.get() > 0) ws_log("Subscriber errors: " + errors.get());
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Parallel broadcaster: sends one message to many connections
+ * (e.g. WsServer.listConnections()) over a fixed pool of threads.
+ * Every connection has its own queue, drained by one pool thread
+ * at a time: the message order is kept and a blocked send (slow peer)
+ * holds one thread only. A connection with maxPending queued messages
+ * or a send blocked for maxSendMillis (checked by a watchdog timer)
+ * is a slow consumer: it leaves the pool, its queued and next messages
+ * are dropped and counted, and it is aborted (1006, the socket is closed
+ * at once). The abort fails its blocked send and returns the pool thread:
+ * as many stalled peers as threads would otherwise stop every delivery.
+ * A close frame would wait behind the blocked send.
+ * The text message is encoded once for all the connections.
+ */
+public class WsBroadcaster {
+    final ExecutorService executor;
+    final int maxPending;
+    final long maxSendNanos;
+    final Timer watchdog = new Timer("WsBroadcaster-watchdog", true);
+    final ConcurrentHashMap<WsConnection, Peer> peers = new ConcurrentHashMap<>();
+    final AtomicLong delivered = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicInteger slowConsumers = new AtomicInteger();
+
+    public WsBroadcaster(int threads, int maxPending) {
+        this(threads, maxPending, 1000);
+    }
+
+    public WsBroadcaster(int threads, int maxPending, int maxSendMillis) {
+        this.maxPending = maxPending;
+        maxSendNanos = maxSendMillis * 1000000L;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "WsBroadcaster-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long period = Math.max(10, maxSendMillis / 4);
+        watchdog.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                for (Peer peer : peers.values()) {
+                    long start = peer.sendStart;
+                    if (start != 0 && now - start > maxSendNanos) peer.evict();
+                }
+            }
+        }, period, period);
+    }
+
+    static class Message {
+        final byte[] payload;
+        final boolean isText;
+
+        Message(byte[] payload, boolean isText) {
+            this.payload = payload;
+            this.isText = isText;
+        }
+    }
+
+    class Peer implements Runnable {
+        final WsConnection conn;
+        final ConcurrentLinkedQueue<Message> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean slow = new AtomicBoolean();
+        volatile long sendStart = 0; // nanoTime of the send in progress
+
+        Peer(WsConnection conn) {
+            this.conn = conn;
+        }
+
+        void offer(Message message) {
+            if (slow.get()) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                dropped.incrementAndGet();
+                evict();
+                return;
+            }
+            queue.add(message);
+            schedule();
+        }
+
+        // the slow consumer leaves the pool
+        void evict() {
+            if (!slow.compareAndSet(false, true)) return;
+            slowConsumers.incrementAndGet();
+            peers.remove(conn, this);
+            drop();
+            conn.close(WsStatus.ABNORMAL_CLOSURE, "Slow consumer");
+        }
+
+        void drop() {
+            while (queue.poll() != null) {
+                pending.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) { // shut down
+                    queue.clear();
+                }
+            }
+        }
+
+        // one message per run: the peers share the pool threads fairly
+        @Override
+        public void run() {
+            if (slow.get()) {
+                drop();
+                scheduled.set(false);
+                return;
+            }
+            Message message = queue.poll();
+            if (message != null) {
+                pending.decrementAndGet();
+                try {
+                    if (conn.isOpen()) {
+                        sendStart = System.nanoTime();
+                        conn.send(new ByteArrayInputStream(message.payload), message.isText);
+                        delivered.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failed.incrementAndGet();
+                } finally {
+                    sendStart = 0;
+                }
+            }
+            if (!conn.isOpen()) {
+                peers.remove(conn, this);
+                queue.clear();
+            }
+            scheduled.set(false);
+            if (!queue.isEmpty()) schedule();
+        }
+    }
+
+    public void broadcast(WsConnection[] connections, String message) {
+        try {
+            broadcast(connections, message.getBytes("UTF-8"), true);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public void broadcast(WsConnection[] connections, byte[] message) {
+        broadcast(connections, message, false);
+    }
+
+    // returns without waiting for the delivery
+    public void broadcast(WsConnection[] connections, byte[] payload, boolean isText) {
+        Message message = new Message(payload, isText);
+        for (WsConnection conn : connections) {
+            if (!conn.isOpen()) {
+                failed.incrementAndGet();
+                continue;
+            }
+            Peer peer = peers.get(conn);
+            if (peer == null) {
+                Peer newPeer = new Peer(conn);
+                peer = peers.putIfAbsent(conn, newPeer);
+                if (peer == null) peer = newPeer;
+            }
+            peer.offer(message);
+        }
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // the evicted connections
+    public int getSlowConsumers() {
+        return slowConsumers.get();
+    }
+
+    public void shutdown() {
+        watchdog.cancel();
+        executor.shutdownNow();
+        peers.clear();
+    }
+}
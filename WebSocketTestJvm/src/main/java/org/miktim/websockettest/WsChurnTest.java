@@ -0,0 +1,342 @@
+/*
+ * WebSocket connection churn benchmark. MIT (c) 2025 agent@local
+ *
+ * Reconnect storm over loopback: concurrency=N client threads connect
+ * (connect().ready()), close and join the connection as fast as they can
+ * for duration seconds, for every scheme x setBacklog x concurrency cell.
+ * The server backlog is the live connection limit of WsServer: the excess
+ * connections get "429 Too Many Requests" and are counted as rejected,
+ * the other connections that did not open are counted as failed (the
+ * client close codes and errors are tallied). Reports the accepted
+ * connects/s, the handshake time p50/p99 (connect to ready), the close
+ * time p50/p99 (close() to the joined client connection), the rejected
+ * and the failed count. After each cell the server connections are
+ * drained, the test waits for the close timers (handshakeSoTimeout) and
+ * runs the GC, then the live threads (Thread.getAllStackTraces) and the
+ * open file descriptors (/proc/self/fd, n/a elsewhere) are compared with
+ * the baseline: a growing delta is a leak. At the end the live threads
+ * are listed by name against the baseline. The library starts a
+ * java.util.Timer thread per close(), a close reply that arrives before
+ * the timer is set leaves it running until handshakeSoTimeout (Timer-#).
+ * The wss clients use WebSocket.setKeyFile(): full handshakes.
+ *
+ * Options (runner: churn:key=value,...):
+ *   schemes=ws/wss backlogs=-1/16 (-1: no limit) concurrency=1/8/32
+ *   duration=3 (s per cell)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsChurnTest extends Thread {
+    static final int DRAIN_TIMEOUT = 10000; // ms
+    static final int HANDSHAKE_TIMEOUT = 2000; // ms, the close timer delay
+
+    final TestContext context;
+    final String[] schemes;
+    final int[] backlogs;
+    final int[] concurrency;
+    final int duration;
+
+    final AtomicLong errors = new AtomicLong();
+    final Map<String, Integer> failCodes = new TreeMap<>();
+
+    WsChurnTest(TestContext context, TestOptions options) {
+        this.context = context;
+        schemes = options.getStrings("schemes", new String[]{"ws", "wss"});
+        backlogs = options.getInts("backlogs", new int[]{-1, 16});
+        concurrency = options.getInts("concurrency", new int[]{1, 8, 32});
+        duration = options.getInt("duration", 3);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    final WsServer.Handler serverHandler = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+            if (e != null) ws_log("Server stopped: " + e);
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    // connects and closes until the deadline
+    class Client extends Thread {
+        final WebSocket webSocket;
+        final String uri;
+        final WsParameters wsp;
+        final long deadline;
+        final LatencyHistogram handshake = new LatencyHistogram();
+        final LatencyHistogram close = new LatencyHistogram();
+        int rejected = 0;
+        int failed = 0;
+
+        Client(WebSocket webSocket, String uri, WsParameters wsp, long deadline) {
+            this.webSocket = webSocket;
+            this.uri = uri;
+            this.wsp = wsp;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    long start = System.nanoTime();
+                    WsConnection conn = webSocket.connect(uri, clientHandler, wsp).ready();
+                    if (!conn.isOpen()) {
+                        conn.join();
+                        WsStatus status = conn.getStatus();
+                        if (isRejected(status)) {
+                            rejected++;
+                        } else {
+                            failed++;
+                            String key = status.code + (status.error == null
+                                    ? "" : " " + status.error.getClass().getSimpleName());
+                            synchronized (failCodes) {
+                                Integer count = failCodes.get(key);
+                                failCodes.put(key, count == null ? 1 : count + 1);
+                            }
+                        }
+                        continue;
+                    }
+                    handshake.record(System.nanoTime() - start);
+                    start = System.nanoTime();
+                    conn.close("Churn");
+                    conn.join();
+                    close.record(System.nanoTime() - start);
+                } catch (Exception e) {
+                    if (errors.incrementAndGet() == 1) ws_log("Client error: " + e);
+                }
+            }
+        }
+    }
+
+    // the backlog answer: a non-101 handshake response (429 Too Many Requests),
+    // the socket and TLS errors of the handshake are also 1002
+    static boolean isRejected(WsStatus status) {
+        return status.code == WsStatus.PROTOCOL_ERROR
+                && status.error instanceof ProtocolException;
+    }
+
+    // waits for the server side connections to close, returns the rest
+    static int drain(WsServer server) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        while (server.listConnections().length > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        return server.listConnections().length;
+    }
+
+    // waits for the close timers to expire, collects the unreachable ones
+    static void settle() throws InterruptedException {
+        Thread.sleep(HANDSHAKE_TIMEOUT + 1000);
+        System.gc();
+        Thread.sleep(500);
+    }
+
+    // the live threads, the same count as threadNames()
+    static int liveThreads() {
+        return Thread.getAllStackTraces().size();
+    }
+
+    static String backlog(int backlog) {
+        return backlog < 0 ? "-" : String.valueOf(backlog);
+    }
+
+    // live threads by name, the digits replaced with #
+    static Map<String, Integer> threadNames() {
+        Map<String, Integer> names = new TreeMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            String name = thread.getName().replaceAll("\\d+", "#");
+            Integer count = names.get(name);
+            names.put(name, count == null ? 1 : count + 1);
+        }
+        return names;
+    }
+
+    // returns the table line
+    String cell(WebSocket serverSocket, WebSocket client, String scheme,
+                int backlog, int clients, int baseThreads, long baseFds) throws Exception {
+        WsParameters serverWsp = new WsParameters()
+                .setHandshakeSoTimeout(HANDSHAKE_TIMEOUT)
+                .setConnectionSoTimeout(10000, true)
+                .setBacklog(backlog);
+        WsServer server = scheme.equals("wss")
+                ? serverSocket.startSecureServer(0, serverHandler, serverWsp)
+                : serverSocket.startServer(0, serverHandler, serverWsp);
+        server.ready();
+        String uri = WsNetProxy.route(scheme + "://localhost:" + server.getPort());
+        WsParameters wsp = new WsParameters()
+                .setHandshakeSoTimeout(HANDSHAKE_TIMEOUT)
+                .setConnectionSoTimeout(10000, true);
+        errors.set(0);
+        List<Client> list = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + duration * 1000L;
+        for (int i = 0; i < clients; i++) list.add(new Client(client, uri, wsp, deadline));
+        long startNanos = System.nanoTime();
+        for (Client c : list) c.start();
+        LatencyHistogram handshake = new LatencyHistogram();
+        LatencyHistogram close = new LatencyHistogram();
+        long rejected = 0;
+        long failed = 0;
+        for (Client c : list) {
+            c.join();
+            handshake.add(c.handshake);
+            close.add(c.close);
+            rejected += c.rejected;
+            failed += c.failed;
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        int left = drain(server);
+        server.stopServer("Completed");
+        server.join();
+        settle();
+        long fds = WsScalingTest.openFiles();
+        return String.format("%-4s %7s %5d %10.1f %8s %8s %8s %8s %8d %6d %6d %5s %7s %6s",
+                scheme, backlog(backlog), clients,
+                handshake.getTotalCount() / seconds,
+                LatencyHistogram.millis(handshake.getValueAtPercentile(50)),
+                LatencyHistogram.millis(handshake.getValueAtPercentile(99)),
+                LatencyHistogram.millis(close.getValueAtPercentile(50)),
+                LatencyHistogram.millis(close.getValueAtPercentile(99)),
+                rejected, failed, errors.get(), left > 0 ? String.valueOf(left) : "-",
+                String.format("%+d", liveThreads() - baseThreads),
+                fds < 0 || baseFds < 0 ? "n/a" : String.format("%+d", fds - baseFds));
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs connection churn benchmark"
+                + "\r\nSchemes: " + Arrays.toString(schemes)
+                + " Backlogs: " + Arrays.toString(backlogs)
+                + " Concurrency: " + Arrays.toString(concurrency)
+                + "\r\nDuration: " + duration + " s per cell\r\n");
+        StringBuilder table = new StringBuilder(String.format(
+                "%-4s %7s %5s %10s %8s %8s %8s %8s %8s %6s %6s %5s %7s %6s",
+                "", "backlog", "conc", "connects/s", "hs p50", "hs p99", "cl p50", "cl p99",
+                "rejected", "failed", "errors", "left", "threads", "fds"));
+        WebSocket serverSocket = null;
+        WebSocket wsClient = null;
+        WebSocket wssClient = null;
+        Map<String, Integer> baseNames = null;
+        int baseThreads = 0;
+        long baseFds = -1;
+        try {
+            InetAddress localhost = InetAddress.getByName("localhost");
+            serverSocket = new WebSocket(localhost);
+            serverSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            wsClient = new WebSocket(localhost);
+            wssClient = new WebSocket(localhost);
+            wssClient.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            baseNames = threadNames();
+            baseThreads = liveThreads();
+            baseFds = WsScalingTest.openFiles();
+            for (String scheme : schemes) {
+                for (int backlog : backlogs) {
+                    for (int clients : concurrency) {
+                        String line;
+                        try {
+                            line = cell(serverSocket, scheme.equals("wss") ? wssClient : wsClient,
+                                    scheme, backlog, clients, baseThreads, baseFds);
+                        } catch (Exception e) {
+                            line = String.format("%-4s %7s %5d failed: %s",
+                                    scheme, backlog(backlog), clients, e);
+                        }
+                        ws_log(line);
+                        table.append("\r\n").append(line);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (serverSocket != null) serverSocket.closeAll("Completed");
+        if (wsClient != null) wsClient.closeAll("Completed");
+        if (wssClient != null) wssClient.closeAll("Completed");
+        ws_log("\r\n" + table);
+        String leaks = "n/a";
+        long fds = -1;
+        try {
+            settle();
+            fds = WsScalingTest.openFiles();
+            Map<String, Integer> leaked = new TreeMap<>();
+            if (baseNames != null) {
+                for (Map.Entry<String, Integer> entry : threadNames().entrySet()) {
+                    Integer base = baseNames.get(entry.getKey());
+                    int delta = entry.getValue() - (base == null ? 0 : base);
+                    if (delta > 0) leaked.put(entry.getKey(), delta);
+                }
+                leaks = leaked.isEmpty() ? "none" : leaked.toString();
+            }
+        } catch (InterruptedException ignore) {
+        }
+        ws_log("(hs: connect to ready ms, cl: close to joined ms,"
+                + " rejected: 429 Too Many Requests, failed: other handshake failures,"
+                + " left: server connections"
+                + " not closed after " + DRAIN_TIMEOUT / 1000 + " s,"
+                + " threads/fds: live after the cell and GC minus the baseline)");
+        ws_log("\r\nAfter the test: threads "
+                + String.format("%+d", liveThreads() - baseThreads)
+                + " fds " + (fds < 0 || baseFds < 0 ? "n/a" : String.format("%+d", fds - baseFds))
+                + "\r\nLeaked threads: " + leaks);
+        synchronized (failCodes) {
+            if (!failCodes.isEmpty()) ws_log("Failed close codes: " + failCodes);
+        }
+        ws_log("\r\nTest completed.");
+    }
+}
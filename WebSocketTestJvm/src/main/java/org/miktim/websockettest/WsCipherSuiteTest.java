@@ -0,0 +1,252 @@
+/*
+ * WebSocket cipher suite benchmark. MIT (c) 2025 agent@local
+ *
+ * Prints the execution environment (WsEnvironment), then for every
+ * enabled protocol and cipher suite of the default SSLParameters starts
+ * a loopback wss server and client restricted to the pair (WsParameters
+ * SSLParameters) and measures the handshake time (connect().ready())
+ * and the bulk MB/s: one-way transfer, the server acknowledges every
+ * message, up to 8 messages are in flight. The TLS 1.3 suites are tried
+ * with TLSv1.3 only, the other suites with the other protocols.
+ * The suites the key file certificate (or the platform) does not support
+ * are not negotiated. Prints the table ranked by the throughput
+ * (rank=handshake: by the handshake time).
+ * Runs on Android and the desktop/server JVM.
+ *
+ * Options (runner: ciphers:key=value,...):
+ *   protocols=(default) suites=(default enabled) handshakes=10
+ *   bytes=4194304 size=65536 rank=throughput
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class WsCipherSuiteTest extends WsEnvironment {
+    static final int WINDOW = 8; // messages in flight
+
+    final String[] protocols;
+    final String[] suites;
+    final int handshakes;
+    final long bulkBytes;
+    final int messageSize;
+    final boolean rankByHandshake;
+
+    final Semaphore window = new Semaphore(WINDOW);
+
+    static class Result {
+        String protocol;
+        String suite;
+        double handshakeMillis; // p50
+        double megabytesPerSecond;
+        String error;
+    }
+
+    public WsCipherSuiteTest(TestContext context, TestOptions options) {
+        super(context);
+        WsParameters wsp = new WsParameters();
+        protocols = options.getStrings("protocols", wsp.getSSLParameters().getProtocols());
+        suites = options.getStrings("suites", wsp.getSSLParameters().getCipherSuites());
+        handshakes = options.getInt("handshakes", 10);
+        bulkBytes = options.getLong("bytes", 4194304);
+        messageSize = options.getInt("size", 65536);
+        rankByHandshake = options.getString("rank", "throughput").equals("handshake");
+    }
+
+    // consumes the message, acknowledges it
+    final WsServer.Handler sink = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asByteArray();
+            if (conn.isOpen()) conn.send("ack");
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asString();
+            window.release();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            window.release(WINDOW); // do not wait for the lost acks
+        }
+    };
+
+    static boolean isTls13Suite(String suite) {
+        return suite.startsWith("TLS_") && !suite.contains("_WITH_");
+    }
+
+    WsParameters parameters(String protocol, String suite) {
+        WsParameters wsp = new WsParameters()
+                .setMaxMessageLength(Math.max(125, messageSize))
+                .setMaxMessages(WINDOW * 2)
+                .setConnectionSoTimeout(10000, true);
+        wsp.getSSLParameters().setProtocols(new String[]{protocol});
+        wsp.getSSLParameters().setCipherSuites(new String[]{suite});
+        return wsp;
+    }
+
+    Result measure(WebSocket webSocket, String protocol, String suite) throws Exception {
+        Result result = new Result();
+        result.protocol = protocol;
+        result.suite = suite;
+        WsServer server = webSocket.startSecureServer(0, sink, parameters(protocol, suite));
+        try {
+            server.ready();
+            String uri = WsNetProxy.route("wss://localhost:" + server.getPort());
+            WsParameters wsp = parameters(protocol, suite);
+            LatencyHistogram latency = new LatencyHistogram();
+            for (int i = 0; i <= handshakes; i++) { // the first one warms up
+                long start = System.nanoTime();
+                WsConnection conn = webSocket.connect(uri, clientHandler, wsp).ready();
+                if (i > 0) latency.record(System.nanoTime() - start);
+                boolean open = conn.isOpen();
+                WsStatus status = conn.getStatus();
+                conn.close("Completed");
+                conn.join();
+                if (!open) {
+                    result.error = "not negotiated: " + status;
+                    return result;
+                }
+            }
+            result.handshakeMillis = latency.getValueAtPercentile(50) / 1e6;
+
+            byte[] payload = WsLoadTest.payload(messageSize);
+            int messages = (int) Math.max(10, bulkBytes / messageSize);
+            WsConnection conn = webSocket.connect(uri, clientHandler, wsp).ready();
+            window.drainPermits();
+            window.release(WINDOW);
+            long startNanos = System.nanoTime();
+            int i = 0;
+            try {
+                for (; i < messages && conn.isOpen(); i++) {
+                    window.acquire();
+                    conn.send(payload);
+                }
+            } catch (Exception e) {
+                // failed, see the connection status
+            }
+            boolean completed = window.tryAcquire(WINDOW, 60, TimeUnit.SECONDS)
+                    && i == messages && conn.isOpen();
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            WsStatus status = conn.getStatus();
+            conn.close("Completed");
+            conn.join();
+            if (completed) {
+                result.megabytesPerSecond = (double) messages * messageSize / 1e6 / seconds;
+            } else {
+                result.error = "transfer failed: " + status;
+            }
+            return result;
+        } finally {
+            server.stopServer("Completed");
+        }
+    }
+
+    static String line(Result result) {
+        return String.format("%-8s %-45s %9.2f %8.2f",
+                result.protocol, result.suite, result.handshakeMillis, result.megabytesPerSecond);
+    }
+
+    public void run() {
+        super.run(); // the environment
+        ws_log("\r\nWs cipher suite benchmark"
+                + "\r\nHandshakes: " + handshakes + " Bulk: " + bulkBytes
+                + " bytes in " + messageSize + " byte messages\r\n");
+        List<Result> results = new ArrayList<>();
+        List<Result> failed = new ArrayList<>();
+        WebSocket webSocket = null;
+        try {
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            for (String protocol : protocols) {
+                boolean tls13 = protocol.equals("TLSv1.3");
+                for (String suite : suites) {
+                    if (suite.endsWith("_SCSV") || isTls13Suite(suite) != tls13) continue;
+                    Result result;
+                    try {
+                        result = measure(webSocket, protocol, suite);
+                    } catch (Exception e) {
+                        result = new Result();
+                        result.protocol = protocol;
+                        result.suite = suite;
+                        result.error = e.toString();
+                    }
+                    if (result.error == null) {
+                        results.add(result);
+                        ws_log(line(result));
+                    } else {
+                        failed.add(result);
+                        ws_log(String.format("%-8s %-45s %s", protocol, suite, result.error));
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (webSocket != null) webSocket.closeAll("Completed");
+
+        Collections.sort(results, new Comparator<Result>() {
+            @Override
+            public int compare(Result r1, Result r2) {
+                return rankByHandshake
+                        ? Double.compare(r1.handshakeMillis, r2.handshakeMillis)
+                        : Double.compare(r2.megabytesPerSecond, r1.megabytesPerSecond);
+            }
+        });
+        StringBuilder table = new StringBuilder(String.format("%4s %-8s %-45s %9s %8s",
+                "rank", "protocol", "cipher suite", "hs p50 ms", "MB/s"));
+        for (int i = 0; i < results.size(); i++) {
+            table.append(String.format("\r\n%4d ", i + 1)).append(line(results.get(i)));
+        }
+        ws_log("\r\nRanked by " + (rankByHandshake ? "the handshake time:" : "the throughput:"));
+        ws_log(table.toString());
+        ws_log("Not negotiated or failed: " + failed.size());
+        ws_log("\r\nTest completed.");
+    }
+}
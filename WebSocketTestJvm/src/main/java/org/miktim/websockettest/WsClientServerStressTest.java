@@ -10,12 +10,9 @@ import org.miktim.websocket.WsStatus;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class WsClientServerStressTest extends Thread {
-    final MainActivity context;
-    final ContextUtil util;
+    final TestContext context;
     static final int MAX_CLIENT_CONNECTIONS = 3; // allowed by server
     final int TEST_SHUTDOWN_TIMEOUT = 30000; //milliseconds
     final int PORT = 8080;
@@ -23,13 +20,12 @@ public class WsClientServerStressTest extends Thread {
 
     WebSocket webSocket = null;
 
-    WsClientServerStressTest(MainActivity context) {
+    WsClientServerStressTest(TestContext context) {
         this.context = context;
-        util = new ContextUtil(context);
     }
 
     void ws_log(String msg) {
-        util.sendBroadcastMessage(msg);
+        context.log(msg);
     }
 
     void testResult(WsConnection conn, int expected) {
@@ -135,13 +131,11 @@ public class WsClientServerStressTest extends Thread {
                     .setSubProtocols("0,1,2,3,4,5,6,7,8,9".split(","))
                     .setBacklog(MAX_CLIENT_CONNECTIONS);
 
-            final Timer timer = new Timer(true);
-            timer.schedule(new TimerTask() {
+            final WsTimerWheel.Timeout timer = WsTimerWheel.shared().schedule(new Runnable() {
                 @Override
                 public void run() {
                     ws_log("\nTime is over!\n");
                     webSocket.closeAll("Time is over!");
-                    timer.cancel();
                 }
             }, TEST_SHUTDOWN_TIMEOUT);
 
@@ -0,0 +1,85 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Receiving side of WsCreditSender: grants the sender "credit,<n>"
+ * for the messages consumed by the wrapped handler. The initial credit
+ * is the library message queue size (WsParameters maxMessages): the sender
+ * never has more messages in flight than the queue holds and the queue
+ * never overflows (1008 "Deque full").
+ * The credits are granted in batches of grantEvery consumed messages
+ * (grantEvery <= maxMessages).
+ */
+public class WsCreditReceiver implements WsServer.Handler {
+    final WsConnection.Handler handler;
+    final int grantEvery;
+    final ConcurrentHashMap<WsConnection, Grant> grants = new ConcurrentHashMap<>();
+
+    // the connection thread only (getParameters() clones)
+    static class Grant {
+        final int limit;
+        int consumed = 0;
+
+        Grant(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    // handler: WsConnection.Handler or WsServer.Handler
+    public WsCreditReceiver(WsConnection.Handler handler, int grantEvery) {
+        this.handler = handler;
+        this.grantEvery = Math.max(1, grantEvery);
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        int maxMessages = conn.getParameters().getMaxMessages();
+        grants.put(conn, new Grant(Math.min(grantEvery, maxMessages)));
+        handler.onOpen(conn, subProtocol);
+        if (conn.isOpen()) conn.send("credit," + maxMessages);
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        handler.onMessage(conn, msg);
+        Grant grant = grants.get(conn);
+        if (grant != null && ++grant.consumed >= grant.limit && conn.isOpen()) {
+            conn.send("credit," + grant.consumed);
+            grant.consumed = 0;
+        }
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        handler.onError(conn, e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        grants.remove(conn);
+        handler.onClose(conn, status);
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStart(server, wsp);
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStop(server, e);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/*
+ * Backpressure-aware sender: paces the sends with the "credit,<n>"
+ * messages of the peer WsCreditReceiver instead of flooding it into
+ * a 1008 close. send() blocks while the window is exhausted.
+ *   credit - up to the granted credit in flight (the receiver queue size)
+ *   aimd   - additionally an AIMD congestion window within the credit:
+ *            +1 message per window of credits, halved when the credit
+ *            round trip exceeds twice its minimum (the receiver queue grows)
+ * Use as the client connection handler. The text messages from the peer
+ * are the credits, the binary messages and the connection events go to
+ * the optional handler:
+ *   WsCreditSender sender = new WsCreditSender(true, null);
+ *   webSocket.connect(uri, sender, wsp).ready();
+ *   sender.send("message");
+ */
+public class WsCreditSender implements WsConnection.Handler {
+    final boolean aimd;
+    final WsConnection.Handler handler;
+    final CountDownLatch opened = new CountDownLatch(1);
+    volatile WsConnection conn;
+
+    // guarded by this
+    long sent = 0;
+    long credited = 0; // including the initial credit
+    long acked = 0;
+    int maxWindow = 0; // the initial credit
+    double window = 1;
+    long[] sendNanos; // ring of the send times, maxWindow long
+    long minRtt = Long.MAX_VALUE;
+    long lastDecrease = 0;
+    long stalls = 0;
+    boolean closed = false;
+
+    public WsCreditSender(boolean aimd, WsConnection.Handler handler) {
+        this.aimd = aimd;
+        this.handler = handler;
+    }
+
+    public void send(String message) throws IOException, InterruptedException {
+        send(message.getBytes("UTF-8"), true);
+    }
+
+    public void send(byte[] message) throws IOException, InterruptedException {
+        send(message, false);
+    }
+
+    public void send(byte[] message, boolean isText) throws IOException, InterruptedException {
+        opened.await(); // onOpen may follow WsConnection.ready()
+        synchronized (this) {
+            boolean stalled = false;
+            while (!closed && (maxWindow == 0 || sent >= credited
+                    || (aimd && sent - acked >= (long) window))) {
+                stalled = true;
+                wait();
+            }
+            if (closed) throw new IOException("Connection closed");
+            if (stalled) stalls++;
+            sendNanos[(int) (sent % maxWindow)] = System.nanoTime();
+            sent++;
+        }
+        conn.send(new ByteArrayInputStream(message), isText);
+    }
+
+    synchronized void credit(int n) {
+        if (maxWindow == 0) { // initial credit: the receiver queue size
+            maxWindow = Math.max(1, n);
+            sendNanos = new long[maxWindow];
+            window = aimd ? 1 : maxWindow;
+            credited = n;
+            notifyAll();
+            return;
+        }
+        credited += n;
+        acked += n;
+        if (aimd && acked > 0) {
+            long now = System.nanoTime();
+            long rtt = now - sendNanos[(int) ((acked - 1) % maxWindow)];
+            minRtt = Math.min(minRtt, rtt);
+            if (rtt > 2 * minRtt && now - lastDecrease > rtt) {
+                window = Math.max(1, window / 2);
+                lastDecrease = now;
+            } else {
+                window = Math.min(maxWindow, window + (double) n / window);
+            }
+        }
+        notifyAll();
+    }
+
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    // sends that waited for the credit
+    public synchronized long getStalls() {
+        return stalls;
+    }
+
+    public synchronized double getWindow() {
+        return window;
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        this.conn = conn;
+        opened.countDown();
+        if (handler != null) handler.onOpen(conn, subProtocol);
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        if (!msg.isText()) {
+            if (handler != null) handler.onMessage(conn, msg);
+            return;
+        }
+        String[] sa = msg.asString().split(",");
+        if (sa.length == 2 && sa[0].equals("credit")) credit(Integer.parseInt(sa[1]));
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        if (handler != null) handler.onError(conn, e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        opened.countDown();
+        if (handler != null) handler.onClose(conn, status);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+import java.net.SocketException;
+
+/*
+ * Echo server handler for the load tests: returns every message as is.
+ * Optionally reads the messages into pooled buffers (setBufferPool)
+ * or streams them back frame by frame while they arrive (setStreaming).
+ */
+public class WsEchoHandler implements WsServer.Handler {
+    final TestContext context;
+    final boolean tcpNoDelay;
+    BufferPool bufferPool = null;
+    boolean streaming = false;
+
+    public WsEchoHandler(TestContext context) {
+        this(context, false);
+    }
+
+    // tcpNoDelay: disable Nagle's algorithm on the server side sockets
+    public WsEchoHandler(TestContext context, boolean tcpNoDelay) {
+        this.context = context;
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    // echo through the pooled buffers instead of asString()/asByteArray()
+    public WsEchoHandler setBufferPool(BufferPool pool) {
+        bufferPool = pool;
+        return this;
+    }
+
+    // WsMessage is an InputStream: send(msg) without materializing it
+    public WsEchoHandler setStreaming(boolean on) {
+        streaming = on;
+        return this;
+    }
+
+    // no other API of the library gives the socket
+    @SuppressWarnings("deprecation")
+    static void setTcpNoDelay(WsConnection conn, boolean on) {
+        try {
+            if (on) conn.getSocket().setTcpNoDelay(true);
+        } catch (SocketException ignore) {
+        }
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        setTcpNoDelay(conn, tcpNoDelay);
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        if (!conn.isOpen()) return;
+        if (streaming) {
+            try {
+                conn.send(msg, msg.isText());
+            } catch (IOException e) {
+                context.log("Echo server side send error: " + e);
+            }
+        } else if (bufferPool != null) {
+            PooledMessage message = new PooledMessage(bufferPool);
+            try {
+                if (message.read(msg, msg.isText())) conn.send(message, msg.isText());
+            } catch (IOException e) {
+                context.log("Echo server side send error: " + e);
+            } finally {
+                message.release();
+            }
+        } else if (msg.isText()) {
+            conn.send(msg.asString());
+        } else {
+            conn.send(msg.asByteArray());
+        }
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        context.log("Echo server side onError: " + e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        if (e != null) context.log("Echo server abnormal shutdown: " + e);
+    }
+}
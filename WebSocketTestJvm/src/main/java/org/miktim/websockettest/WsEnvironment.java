@@ -1,7 +1,5 @@
 package org.miktim.websockettest;
 
-import android.os.Build;
-
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 
@@ -10,17 +8,15 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.TrustManagerFactory;
 
-public class WsEnvironment {
-    final MainActivity context;
-    final ContextUtil util;
+public class WsEnvironment extends Thread {
+    final TestContext context;
 
-    public WsEnvironment(MainActivity context) {
+    public WsEnvironment(TestContext context) {
         this.context = context;
-        util = new ContextUtil(context);
     }
 
     void ws_log(String msg) {
-        util.sendBroadcastMessage(msg);
+        context.log(msg);
     }
 
     public static String join(Object[] array, String delimiter) {
@@ -34,7 +30,7 @@ public class WsEnvironment {
         return sb.delete(sb.length() - delimiter.length(), sb.length()).toString();
     }
 
-    public void start() {
+    public void run() {
 
         try {
             ws_log(null); // clear console
@@ -44,7 +40,9 @@ public class WsEnvironment {
             for (String s : sa) {
                 ws_log(s + ": " + System.getProperty(s));
             }
-            ws_log("\nAndroid API: " + Build.VERSION.SDK_INT);
+            if (context.getAndroidApi() > 0) {
+                ws_log("\nAndroid API: " + context.getAndroidApi());
+            }
 
             SSLContext sslContext = null;
             sslContext = SSLContext.getDefault();
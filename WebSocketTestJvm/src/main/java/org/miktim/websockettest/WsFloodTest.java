@@ -0,0 +1,310 @@
+/*
+ * WebSocket connection flood test. MIT (c) 2025 agent@local
+ *
+ * The served clients connect to the loopback echo server first and echo
+ * size bytes in lock-step for duration seconds, a newcomer connects,
+ * echoes once and closes every 200 ms. Meanwhile flood=N threads connect
+ * as fast as they can, hold every admitted connection for hold ms and
+ * close it. Server modes:
+ *   quiet     - no flood, the reference
+ *   none      - no protection
+ *   backlog   - WsParameters.setBacklog(limit): 429 before the handshake
+ *   admission - WsAdmissionHandler(rate, burst, limit): 1013 in onOpen
+ * Reports the served echoes/s and round trip p50/p99/max, the newcomers
+ * connected, the served connections lost, the flood connects/s and
+ * the flood connections admitted and rejected (close codes tallied).
+ *
+ * Options (runner: flood:key=value,...):
+ *   modes=quiet/none/backlog/admission clients=4 flood=64 hold=1000 (ms)
+ *   duration=5 (s) limit=32 (live connections) rate=50 (connects/s) burst=10
+ *   size=64
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsFloodTest extends Thread {
+    static final int NEWCOMER_INTERVAL = 200; // ms
+
+    final TestContext context;
+    final String[] modes;
+    final int clients;
+    final int floodThreads;
+    final int hold;
+    final int duration;
+    final int limit;
+    final int rate;
+    final int burst;
+    final int messageSize;
+
+    final AtomicLong floodConnects = new AtomicLong();
+    final AtomicLong floodAdmitted = new AtomicLong();
+    final Map<Integer, Integer> floodCodes = new TreeMap<>();
+
+    WsFloodTest(TestContext context, TestOptions options) {
+        this.context = context;
+        modes = options.getStrings("modes", new String[]{"quiet", "none", "backlog", "admission"});
+        clients = options.getInt("clients", 4);
+        floodThreads = options.getInt("flood", 64);
+        hold = options.getInt("hold", 1000);
+        duration = options.getInt("duration", 5);
+        limit = options.getInt("limit", 32);
+        rate = options.getInt("rate", 50);
+        burst = options.getInt("burst", 10);
+        messageSize = options.getInt("size", 64);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // the replies per connection
+    static class EchoClient implements WsConnection.Handler {
+        final LinkedBlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            replies.offer(msg.asByteArray());
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    }
+
+    final WsConnection.Handler floodHandler = new EchoClient();
+
+    WsParameters clientParameters() {
+        return new WsParameters()
+                .setMaxMessageLength(Math.max(125, messageSize))
+                .setConnectionSoTimeout(10000, true);
+    }
+
+    // false: closed (the admission rejects after onOpen) or timed out
+    static boolean echo(WsConnection conn, EchoClient handler, byte[] payload)
+            throws InterruptedException {
+        if (!conn.isOpen()) return false;
+        try {
+            conn.send(payload);
+        } catch (Exception e) {
+            return false;
+        }
+        long end = System.currentTimeMillis() + 10000;
+        while (conn.isOpen() && System.currentTimeMillis() < end) {
+            if (handler.replies.poll(50, TimeUnit.MILLISECONDS) != null) return true;
+        }
+        return false;
+    }
+
+    // lock-step echoes until the deadline
+    class Served extends Thread {
+        final WsConnection conn;
+        final EchoClient handler;
+        final long deadline;
+        final LatencyHistogram rtt = new LatencyHistogram();
+
+        Served(WsConnection conn, EchoClient handler, long deadline) {
+            this.conn = conn;
+            this.handler = handler;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            byte[] payload = WsLoadTest.payload(messageSize);
+            try {
+                while (System.currentTimeMillis() < deadline && conn.isOpen()) {
+                    long start = System.nanoTime();
+                    conn.send(payload);
+                    if (handler.replies.poll(10, TimeUnit.SECONDS) == null) break;
+                    rtt.record(System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                // lost, see isOpen()
+            }
+        }
+    }
+
+    // connects, holds, closes until the deadline
+    class Flooder extends Thread {
+        final WebSocket webSocket;
+        final String uri;
+        final long deadline;
+
+        Flooder(WebSocket webSocket, String uri, long deadline) {
+            this.webSocket = webSocket;
+            this.uri = uri;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            WsParameters wsp = clientParameters();
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    floodConnects.incrementAndGet();
+                    WsConnection conn = webSocket.connect(uri, floodHandler, wsp).ready();
+                    long end = System.currentTimeMillis() + hold;
+                    while (conn.isOpen() && System.currentTimeMillis() < end) Thread.sleep(10);
+                    if (conn.isOpen()) {
+                        floodAdmitted.incrementAndGet();
+                        conn.close("Flood");
+                    } else {
+                        int code = conn.getStatus().code;
+                        synchronized (floodCodes) {
+                            Integer count = floodCodes.get(code);
+                            floodCodes.put(code, count == null ? 1 : count + 1);
+                        }
+                    }
+                    conn.join();
+                } catch (Exception e) {
+                    // counted as a connect
+                }
+            }
+        }
+    }
+
+    // returns the table line
+    String cell(WebSocket webSocket, String mode) throws Exception {
+        WsParameters serverWsp = new WsParameters()
+                .setMaxMessageLength(Math.max(125, messageSize))
+                .setConnectionSoTimeout(10000, true);
+        if (mode.equals("backlog")) serverWsp.setBacklog(limit);
+        WsServer.Handler handler = new WsEchoHandler(context, true);
+        WsAdmissionHandler admission = null;
+        if (mode.equals("admission")) {
+            admission = new WsAdmissionHandler(handler, rate, burst, limit);
+            handler = admission;
+        }
+        WsServer server = webSocket.startServer(0, handler, serverWsp);
+        server.ready();
+        String uri = WsNetProxy.route("ws://localhost:" + server.getPort());
+        floodConnects.set(0);
+        floodAdmitted.set(0);
+        synchronized (floodCodes) {
+            floodCodes.clear();
+        }
+        try {
+            long deadline = System.currentTimeMillis() + duration * 1000L;
+            List<Served> served = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                EchoClient echoClient = new EchoClient();
+                WsConnection conn = webSocket.connect(uri, echoClient, clientParameters()).ready();
+                if (!conn.isOpen()) throw new Exception("Served client: " + conn.getStatus());
+                served.add(new Served(conn, echoClient, deadline));
+            }
+            List<Flooder> flooders = new ArrayList<>();
+            if (!mode.equals("quiet")) {
+                for (int i = 0; i < floodThreads; i++) flooders.add(new Flooder(webSocket, uri, deadline));
+            }
+            long startNanos = System.nanoTime();
+            for (Flooder flooder : flooders) flooder.start();
+            for (Served s : served) s.start();
+            // newcomers
+            int newcomers = 0;
+            int connected = 0;
+            byte[] payload = WsLoadTest.payload(messageSize);
+            while (System.currentTimeMillis() < deadline) {
+                newcomers++;
+                EchoClient echoClient = new EchoClient();
+                WsConnection conn = webSocket.connect(uri, echoClient, clientParameters()).ready();
+                if (echo(conn, echoClient, payload)) connected++;
+                conn.close("Newcomer");
+                Thread.sleep(NEWCOMER_INTERVAL);
+            }
+            LatencyHistogram rtt = new LatencyHistogram();
+            int lost = 0;
+            for (Served s : served) {
+                s.join();
+                rtt.add(s.rtt);
+                if (!s.conn.isOpen()) lost++;
+                s.conn.close("Completed");
+            }
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            for (Flooder flooder : flooders) flooder.join();
+            if (admission != null) {
+                ws_log("Admission: admitted " + admission.getAdmitted()
+                        + " rejected by rate " + admission.getRateRejected()
+                        + " by limit " + admission.getLimitRejected());
+            }
+            long rejected = 0;
+            synchronized (floodCodes) {
+                for (int count : floodCodes.values()) rejected += count;
+            }
+            return String.format("%-9s %8.1f %8s %8s %8s %8s %4d %8.1f %8d %8d %s",
+                    mode, rtt.getTotalCount() / seconds,
+                    LatencyHistogram.millis(rtt.getValueAtPercentile(50)),
+                    LatencyHistogram.millis(rtt.getValueAtPercentile(99)),
+                    LatencyHistogram.millis(rtt.getMaxValue()),
+                    connected + "/" + newcomers, lost,
+                    floodConnects.get() / seconds, floodAdmitted.get(), rejected,
+                    floodCodes.isEmpty() ? "" : floodCodes.toString());
+        } finally {
+            server.stopServer("Completed");
+            server.join();
+        }
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs connection flood test"
+                + "\r\nModes: " + Arrays.toString(modes)
+                + "\r\nServed clients: " + clients + " Echo: " + messageSize + " bytes"
+                + " Newcomers: every " + NEWCOMER_INTERVAL + " ms"
+                + "\r\nFlood threads: " + floodThreads + " Hold: " + hold + " ms"
+                + " Duration: " + duration + " s"
+                + "\r\nLimit: " + limit + " live connections"
+                + " Admission rate: " + rate + " connects/s burst " + burst + "\r\n");
+        StringBuilder table = new StringBuilder(String.format("%-9s %8s %8s %8s %8s %8s %4s %8s %8s %8s %s",
+                "mode", "echo/s", "p50 ms", "p99 ms", "max ms", "newcomer", "lost",
+                "flood/s", "admitted", "rejected", "codes"));
+        WebSocket webSocket = null;
+        try {
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            for (String mode : modes) {
+                String line;
+                try {
+                    line = cell(webSocket, mode);
+                } catch (Exception e) {
+                    line = String.format("%-9s failed: %s", mode, e);
+                }
+                ws_log(line);
+                table.append("\r\n").append(line);
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (webSocket != null) webSocket.closeAll("Completed");
+        ws_log("\r\n" + table);
+        ws_log("(echo: served clients, lock-step; newcomer: connected and echoed/attempts;"
+                + " lost: served connections closed; codes: flood close codes,"
+                + " 1002: 429 Too Many Requests, " + WsAdmissionHandler.TRY_AGAIN_LATER
+                + ": admission)");
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * WebSocket raw frame blaster and fuzzer. MIT (c) 2025 agent@local
+ *
+ * Drives the in-process WsServer from plain sockets, without the client
+ * library in the loop: the driver completes the handshake (the RFC 6455
+ * sample key, see WsNioLoadDriver) and writes pre-built, pre-masked frames.
+ *   blast - every connection streams a buffer of rounds for duration s:
+ *           text, binary, a text message of three fragments with a ping
+ *           between the fragments, a binary message of two fragments,
+ *           then the close frame. Reports the client write rate and
+ *           the server side (WsListener parse + handler) messages/s and
+ *           payload MB/s, the pongs and the server close code.
+ *           The server handler only counts the messages.
+ *   fuzz  - one connection per case: malformed handshake requests and
+ *           frames (reserved bits, opcodes, masking, lengths, control
+ *           frames, fragmentation, invalid UTF-8, close payloads).
+ *           Reports the expected and the actual server close code
+ *           (the server close frame and the server side WsStatus).
+ *           random=N mutated frame headers must end with a close, not hang.
+ *           The cases are judged by what the library itself answers: it
+ *           replies to an unsolicited pong with 1002 and does not validate
+ *           UTF-8, the invalid UTF-8 cases are reported UNEXPECTED.
+ *
+ * Options (runner: blast:key=value,...):
+ *   modes=blast/fuzz connections=1 size=1024 duration=5 (s)
+ *   maxMessages=65536 (the server queue: the handler must not cap the parse
+ *   rate, smaller queues show the 1008 overflow) maxLength=65536 random=100
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsFrameBlaster extends Thread {
+    static final byte[] MASK = WsNioLoadDriver.MASK;
+    static final int NO_CLOSE = -1; // no close frame from the server
+    static final int NO_UPGRADE = -2; // handshake rejected
+
+    final TestContext context;
+    final String[] modes;
+    final int connections;
+    final int size;
+    final int duration;
+    final int maxMessages;
+    final int maxLength;
+    final int randomCases;
+
+    final AtomicLong messages = new AtomicLong();
+    final AtomicLong payloadBytes = new AtomicLong();
+    final AtomicLong lastMessageNanos = new AtomicLong();
+    final LinkedBlockingQueue<WsStatus> serverCloses = new LinkedBlockingQueue<>();
+    int port;
+
+    WsFrameBlaster(TestContext context, TestOptions options) {
+        this.context = context;
+        modes = options.getStrings("modes", new String[]{"blast", "fuzz"});
+        connections = options.getInt("connections", 1);
+        size = options.getInt("size", 1024);
+        duration = options.getInt("duration", 5);
+        maxMessages = options.getInt("maxMessages", 65536);
+        maxLength = options.getInt("maxLength", 65536);
+        randomCases = options.getInt("random", 100);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // counts the messages: the close codes are the library's own
+    final WsServer.Handler serverHandler = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            byte[] payload = msg.asByteArray();
+            messages.incrementAndGet();
+            payloadBytes.addAndGet(payload.length);
+            lastMessageNanos.set(System.nanoTime());
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            serverCloses.offer(status);
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    // client frame: first byte (FIN, RSV, opcode), masked payload
+    static void frame(ByteArrayOutputStream out, int b1, byte[] payload) {
+        frame(out, b1, payload.length, payload, true);
+    }
+
+    static void frame(ByteArrayOutputStream out, int b1, long length, byte[] payload, boolean masked) {
+        out.write(b1);
+        int maskBit = masked ? 0x80 : 0;
+        if (length < 126) {
+            out.write(maskBit | (int) length);
+        } else if (length < 65536) {
+            out.write(maskBit | 126);
+            out.write((int) (length >>> 8));
+            out.write((int) length);
+        } else {
+            out.write(maskBit | 127);
+            for (int i = 7; i >= 0; i--) out.write((int) (length >>> (i * 8)));
+        }
+        if (masked) out.write(MASK, 0, MASK.length);
+        for (int i = 0; i < payload.length; i++) {
+            out.write(masked ? payload[i] ^ MASK[i & 3] : payload[i]);
+        }
+    }
+
+    static byte[] closePayload(int code) {
+        return new byte[]{(byte) (code >>> 8), (byte) code};
+    }
+
+    static byte[] bytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String request(String key, String version, String method) {
+        return method + " / HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + (key == null ? "" : "Sec-WebSocket-Key: " + key + "\r\n")
+                + "Sec-WebSocket-Version: " + version + "\r\n\r\n";
+    }
+
+    // writes the request, true: 101 with the expected accept key
+    static boolean handshake(Socket socket, String request) throws IOException {
+        OutputStream os = socket.getOutputStream();
+        os.write(request.getBytes("ISO-8859-1"));
+        os.flush();
+        InputStream is = socket.getInputStream();
+        StringBuilder head = new StringBuilder();
+        int b;
+        while ((b = is.read()) >= 0) {
+            head.append((char) b);
+            if (head.length() >= 4 && head.lastIndexOf("\r\n\r\n") == head.length() - 4) break;
+        }
+        String s = head.toString();
+        return s.startsWith("HTTP/1.1 101") && s.contains(WsNioLoadDriver.ACCEPT);
+    }
+
+    // reads the server frames until the close, returns the close code or NO_CLOSE
+    static int readUntilClose(InputStream is, AtomicLong pongs) throws IOException {
+        byte[] header = new byte[8];
+        try {
+            while (true) {
+                int b1 = is.read();
+                int b2 = is.read();
+                if ((b1 | b2) < 0) return NO_CLOSE;
+                long length = b2 & 0x7F;
+                int ext = length == 126 ? 2 : length == 127 ? 8 : 0;
+                if (ext > 0) {
+                    readFully(is, header, ext);
+                    length = 0;
+                    for (int i = 0; i < ext; i++) length = (length << 8) | (header[i] & 0xFF);
+                }
+                byte[] payload = new byte[(int) Math.min(length, 125)];
+                readFully(is, payload, payload.length);
+                for (long skip = length - payload.length; skip > 0; ) {
+                    long n = is.skip(skip);
+                    if (n <= 0) throw new EOFException();
+                    skip -= n;
+                }
+                int opcode = b1 & 0x0F;
+                if (opcode == 0xA && pongs != null) pongs.incrementAndGet();
+                if (opcode == 0x8) {
+                    return payload.length >= 2
+                            ? ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF) : WsStatus.NO_STATUS;
+                }
+            }
+        } catch (EOFException | SocketTimeoutException e) {
+            return NO_CLOSE;
+        } catch (IOException e) { // reset
+            return NO_CLOSE;
+        }
+    }
+
+    static void readFully(InputStream is, byte[] buf, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            int n = is.read(buf, off, len - off);
+            if (n < 0) throw new EOFException();
+            off += n;
+        }
+    }
+
+    // one round of the blast mix, messages: 4
+    byte[] round() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] text = new byte[size];
+        for (int i = 0; i < size; i++) text[i] = (byte) ('a' + i % 26);
+        byte[] binary = WsLoadTest.payload(size);
+        int third = Math.max(1, size / 3);
+        int half = Math.max(1, size / 2);
+        frame(out, 0x81, text);
+        frame(out, 0x82, binary);
+        frame(out, 0x01, Arrays.copyOfRange(text, 0, third)); // text, not FIN
+        frame(out, 0x89, bytes("blaster")); // ping between the fragments
+        frame(out, 0x00, Arrays.copyOfRange(text, 0, third)); // continuation
+        frame(out, 0x80, Arrays.copyOfRange(text, 0, third)); // last continuation
+        frame(out, 0x02, Arrays.copyOfRange(binary, 0, half));
+        frame(out, 0x80, Arrays.copyOfRange(binary, 0, half));
+        return out.toByteArray();
+    }
+
+    class Blaster extends Thread {
+        final byte[] buffer;
+        final int rounds;
+        long sentBytes = 0;
+        long sentRounds = 0;
+        int closeCode = NO_CLOSE;
+        final AtomicLong pongs = new AtomicLong();
+        String error;
+
+        Blaster(byte[] buffer, int rounds) {
+            this.buffer = buffer;
+            this.rounds = rounds;
+        }
+
+        @Override
+        public void run() {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress("localhost", port), 5000);
+                socket.setSoTimeout(10000);
+                if (!handshake(socket, request(WsNioLoadDriver.KEY, "13", "GET"))) {
+                    error = "handshake failed";
+                    return;
+                }
+                final InputStream is = socket.getInputStream();
+                Thread reader = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            closeCode = readUntilClose(is, pongs);
+                        } catch (IOException e) {
+                            // closed
+                        }
+                    }
+                };
+                reader.start();
+                OutputStream os = socket.getOutputStream();
+                long deadline = System.currentTimeMillis() + duration * 1000L;
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        os.write(buffer);
+                        sentBytes += buffer.length;
+                        sentRounds += rounds;
+                    }
+                    ByteArrayOutputStream close = new ByteArrayOutputStream();
+                    frame(close, 0x88, closePayload(WsStatus.NORMAL_CLOSURE));
+                    os.write(close.toByteArray());
+                    os.flush();
+                } catch (IOException e) {
+                    error = "write: " + e.getMessage();
+                }
+                reader.join(30000);
+            } catch (Exception e) {
+                error = e.toString();
+            } finally {
+                WsNetProxy.closeQuietly(socket);
+            }
+        }
+    }
+
+    String blast() throws InterruptedException {
+        byte[] round = round();
+        int rounds = Math.max(1, 262144 / round.length); // ~256 kB writes
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < rounds; i++) out.write(round, 0, round.length);
+        byte[] buffer = out.toByteArray();
+        messages.set(0);
+        payloadBytes.set(0);
+        lastMessageNanos.set(0);
+        serverCloses.clear();
+        List<Blaster> blasters = new ArrayList<>();
+        for (int i = 0; i < connections; i++) blasters.add(new Blaster(buffer, rounds));
+        long startNanos = System.nanoTime();
+        for (Blaster blaster : blasters) blaster.start();
+        long sentBytes = 0;
+        long sentMessages = 0;
+        long pongs = 0;
+        Map<Integer, Integer> closes = new TreeMap<>();
+        for (Blaster blaster : blasters) {
+            blaster.join();
+            sentBytes += blaster.sentBytes;
+            sentMessages += blaster.sentRounds * 4;
+            pongs += blaster.pongs.get();
+            Integer n = closes.get(blaster.closeCode);
+            closes.put(blaster.closeCode, n == null ? 1 : n + 1);
+            if (blaster.error != null) ws_log("Blaster: " + blaster.error);
+        }
+        double sendSeconds = duration;
+        long delivered = messages.get();
+        double serverSeconds = (lastMessageNanos.get() - startNanos) / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Client: %.1f MB/s written, %d messages (%d frames) sent",
+                sentBytes / 1e6 / sendSeconds, sentMessages, sentMessages / 4 * 8));
+        sb.append(String.format("\r\nServer: %d messages delivered, %s messages/s, %s MB/s payload",
+                delivered,
+                delivered == 0 ? "n/a" : String.format("%.0f", delivered / serverSeconds),
+                delivered == 0 ? "n/a" : String.format("%.1f", payloadBytes.get() / 1e6 / serverSeconds)));
+        sb.append("\r\nPongs: ").append(pongs).append(" Server close codes (connections): ");
+        for (Map.Entry<Integer, Integer> e : closes.entrySet()) {
+            sb.append(e.getKey() == NO_CLOSE ? "none" : e.getKey()).append(" x").append(e.getValue()).append(" ");
+        }
+        return sb.toString();
+    }
+
+    static class FuzzCase {
+        final String name;
+        final int expected;
+        final String request;
+        final byte[] frames;
+        final boolean truncated; // no close frame, half close
+
+        FuzzCase(String name, int expected, String request, byte[] frames, boolean truncated) {
+            this.name = name;
+            this.expected = expected;
+            this.request = request;
+            this.frames = frames;
+            this.truncated = truncated;
+        }
+    }
+
+    FuzzCase frames(String name, int expected, Object... frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object f : frames) {
+            byte[] b = (byte[]) f;
+            out.write(b, 0, b.length);
+        }
+        return new FuzzCase(name, expected, request(WsNioLoadDriver.KEY, "13", "GET"),
+                out.toByteArray(), false);
+    }
+
+    static byte[] f(int b1, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        frame(out, b1, payload);
+        return out.toByteArray();
+    }
+
+    static byte[] f(int b1, long length, byte[] payload, boolean masked) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        frame(out, b1, length, payload, masked);
+        return out.toByteArray();
+    }
+
+    List<FuzzCase> fuzzCases() {
+        String valid = request(WsNioLoadDriver.KEY, "13", "GET");
+        byte[] hello = bytes("hello");
+        byte[] e9 = bytes("é"); // 2 bytes
+        List<FuzzCase> cases = new ArrayList<>();
+        cases.add(new FuzzCase("no Sec-WebSocket-Key", NO_UPGRADE,
+                request(null, "13", "GET"), new byte[0], false));
+        cases.add(new FuzzCase("Sec-WebSocket-Version 8", NO_UPGRADE,
+                request(WsNioLoadDriver.KEY, "8", "GET"), new byte[0], false));
+        cases.add(new FuzzCase("POST request", NO_UPGRADE,
+                request(WsNioLoadDriver.KEY, "13", "POST"), new byte[0], false));
+        cases.add(new FuzzCase("garbage request line", NO_UPGRADE,
+                "\u0001\u0002 garbage\r\n\r\n", new byte[0], false));
+        cases.add(frames("valid text, close", WsStatus.NORMAL_CLOSURE, f(0x81, hello)));
+        cases.add(frames("UTF-8 split over fragments", WsStatus.NORMAL_CLOSURE,
+                f(0x01, new byte[]{e9[0]}), f(0x80, new byte[]{e9[1]})));
+        cases.add(frames("RSV1 set", WsStatus.PROTOCOL_ERROR, f(0xC1, hello)));
+        cases.add(frames("reserved opcode 3", WsStatus.PROTOCOL_ERROR, f(0x83, hello)));
+        cases.add(frames("reserved opcode 0xB", WsStatus.PROTOCOL_ERROR, f(0x8B, hello)));
+        cases.add(frames("unmasked client frame", WsStatus.PROTOCOL_ERROR,
+                f(0x81, hello.length, hello, false)));
+        cases.add(frames("ping payload 126", WsStatus.PROTOCOL_ERROR, f(0x89, new byte[126])));
+        cases.add(frames("fragmented ping", WsStatus.PROTOCOL_ERROR, f(0x09, hello)));
+        cases.add(frames("unsolicited pong", WsStatus.PROTOCOL_ERROR, f(0x8A, hello)));
+        cases.add(frames("continuation without start", WsStatus.PROTOCOL_ERROR, f(0x80, hello)));
+        cases.add(frames("data frame inside fragments", WsStatus.PROTOCOL_ERROR,
+                f(0x01, hello), f(0x82, hello)));
+        cases.add(frames("64-bit length, MSB set", WsStatus.PROTOCOL_ERROR,
+                f(0x82, 0x8000000000000010L, new byte[16], true)));
+        cases.add(frames("message over maxMessageLength", WsStatus.MESSAGE_TOO_BIG,
+                f(0x82, new byte[maxLength + 1])));
+        cases.add(frames("fragments over maxMessageLength", WsStatus.MESSAGE_TOO_BIG,
+                f(0x02, new byte[maxLength / 2 + 1]), f(0x80, new byte[maxLength / 2 + 1])));
+        cases.add(frames("invalid UTF-8 text", WsStatus.INVALID_FRAME,
+                f(0x81, new byte[]{(byte) 0xC3, 0x28})));
+        cases.add(frames("overlong UTF-8 text", WsStatus.INVALID_FRAME,
+                f(0x81, new byte[]{(byte) 0xC0, (byte) 0xAF})));
+        cases.add(frames("UTF-16 surrogate in text", WsStatus.INVALID_FRAME,
+                f(0x81, new byte[]{(byte) 0xED, (byte) 0xA0, (byte) 0x80})));
+        cases.add(new FuzzCase("close payload 1 byte", WsStatus.PROTOCOL_ERROR, valid,
+                f(0x88, new byte[]{0x03}), false));
+        cases.add(new FuzzCase("close code 999", WsStatus.PROTOCOL_ERROR, valid,
+                f(0x88, closePayload(999)), false));
+        cases.add(new FuzzCase("close code 1005", WsStatus.PROTOCOL_ERROR, valid,
+                f(0x88, closePayload(1005)), false));
+        ByteArrayOutputStream truncated = new ByteArrayOutputStream();
+        frame(truncated, 0x82, 100, new byte[10], true);
+        cases.add(new FuzzCase("truncated frame, EOF", NO_CLOSE, valid,
+                truncated.toByteArray(), true));
+        return cases;
+    }
+
+    // [close frame code, server status code]
+    int[] run(FuzzCase fuzz) throws Exception {
+        serverCloses.clear();
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress("localhost", port), 5000);
+            socket.setSoTimeout(3000);
+            if (!handshake(socket, fuzz.request)) {
+                return new int[]{NO_UPGRADE, serverCode(200)};
+            }
+            OutputStream os = socket.getOutputStream();
+            InputStream is = socket.getInputStream();
+            try {
+                os.write(fuzz.frames);
+                os.flush();
+                if (fuzz.truncated) {
+                    socket.shutdownOutput();
+                } else {
+                    Thread.sleep(100);
+                    os.write(f(0x88, closePayload(WsStatus.NORMAL_CLOSURE)));
+                    os.flush();
+                }
+            } catch (IOException e) {
+                // closed by the server
+            }
+            int code = readUntilClose(is, null);
+            if (code == NO_CLOSE && !fuzz.truncated && !socket.isOutputShutdown()) {
+                try {
+                    socket.shutdownOutput(); // unblock the server reading the payload
+                } catch (IOException e) {
+                    // closed
+                }
+                code = readUntilClose(is, null);
+            }
+            return new int[]{code, serverCode(3000)};
+        } finally {
+            WsNetProxy.closeQuietly(socket);
+        }
+    }
+
+    int serverCode(long timeoutMillis) throws InterruptedException {
+        WsStatus status = serverCloses.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        return status == null ? NO_CLOSE : status.code;
+    }
+
+    static String code(int code) {
+        return code == NO_CLOSE ? "none" : code == NO_UPGRADE ? "no 101" : String.valueOf(code);
+    }
+
+    String fuzz() throws Exception {
+        StringBuilder sb = new StringBuilder(String.format("%-32s %8s %8s %8s %s",
+                "case", "expected", "close", "server", "result"));
+        int passed = 0;
+        List<FuzzCase> cases = fuzzCases();
+        for (FuzzCase fuzz : cases) {
+            int[] codes = run(fuzz);
+            boolean ok = codes[0] == fuzz.expected
+                    || (fuzz.expected == NO_CLOSE && codes[1] == WsStatus.ABNORMAL_CLOSURE);
+            if (ok) passed++;
+            String line = String.format("%-32s %8s %8s %8s %s", fuzz.name, code(fuzz.expected),
+                    code(codes[0]), code(codes[1]), ok ? "ok" : "UNEXPECTED");
+            ws_log(line);
+            sb.append("\r\n").append(line);
+        }
+        sb.append(String.format("\r\nExpected closes: %d of %d cases", passed, cases.size()));
+
+        // mutated headers must end with a close, not hang
+        Random random = new Random(1);
+        byte[] valid = f(0x81, bytes("mutated frame payload"));
+        Map<String, Integer> outcomes = new TreeMap<>();
+        for (int i = 0; i < randomCases; i++) {
+            byte[] mutated = valid.clone();
+            int pos = random.nextInt(6); // the header and the mask
+            mutated[pos] ^= (byte) (1 << random.nextInt(8));
+            int[] codes = run(new FuzzCase("random", 0,
+                    request(WsNioLoadDriver.KEY, "13", "GET"), mutated, false));
+            String outcome = code(codes[0]) + "/" + code(codes[1]);
+            Integer n = outcomes.get(outcome);
+            outcomes.put(outcome, n == null ? 1 : n + 1);
+        }
+        if (randomCases > 0) {
+            sb.append("\r\nRandom header mutations (close/server): ").append(outcomes);
+        }
+        int[] alive = run(frames("server alive", WsStatus.NORMAL_CLOSURE, f(0x81, bytes("alive"))));
+        sb.append("\r\nServer alive after fuzzing: ")
+                .append(alive[0] == WsStatus.NORMAL_CLOSURE ? "yes" : "NO (" + code(alive[0]) + ")");
+        return sb.toString();
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs raw frame blaster and fuzzer"
+                + "\r\nModes: " + Arrays.toString(modes) + " Connections: " + connections
+                + " Size: " + size + " Duration: " + duration + " s"
+                + "\r\nServer maxMessages: " + maxMessages + " maxMessageLength: " + maxLength + "\r\n");
+        StringBuilder report = new StringBuilder();
+        WebSocket webSocket = null;
+        try {
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            WsParameters wsp = new WsParameters()
+                    .setMaxMessages(maxMessages)
+                    .setMaxMessageLength(maxLength)
+                    .setHandshakeSoTimeout(3000)
+                    .setConnectionSoTimeout(10000, true);
+            WsServer server = webSocket.startServer(0, serverHandler, wsp);
+            server.ready();
+            port = server.getPort();
+            for (String mode : modes) {
+                String result = mode.equals("fuzz") ? fuzz() : blast();
+                ws_log(result + "\r\n");
+                report.append("\r\n").append(mode).append(":\r\n").append(result).append("\r\n");
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (webSocket != null) webSocket.closeAll("Completed");
+        ws_log(report.toString());
+        ws_log("(close: the server close frame code, server: the server side WsStatus code)");
+        ws_log("\r\nTest completed.");
+    }
+}
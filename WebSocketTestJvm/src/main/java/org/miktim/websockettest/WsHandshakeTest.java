@@ -0,0 +1,284 @@
+/*
+ * WebSocket TLS handshake rate benchmark. MIT (c) 2025 agent@local
+ *
+ * Connection churn over loopback wss: the clients connect, wait for
+ * the WebSocket handshake (connect().ready()) and close, for every
+ * protocol of WsParameters.getSSLParameters() and the client modes:
+ *   keyfile - WebSocket.setKeyFile() on the client: the library creates
+ *             the SSLContext (and loads the key file) on every connect,
+ *             the sessions are never resumed
+ *   full    - shared client SSLContext, the client session cache is
+ *             invalidated before every connect: full handshakes
+ *   resumed - shared client SSLContext with the session cache:
+ *             abbreviated handshakes (session id or TLS 1.3 ticket)
+ * The shared context trusts the key file and is installed as the default
+ * SSLContext for the test (the library uses the default SSLSocketFactory
+ * without a key file), the previous default is restored at the end.
+ * A plain ws row is the baseline. Reports handshakes/s (connect to close),
+ * the connect latency percentiles and process CPU ms per handshake.
+ * The loopback latency includes the delayed ACK stalls of the handshake
+ * flights (no TCP_NODELAY before the handshake): compare the CPU column.
+ *
+ * Options (runner: handshake:key=value,...):
+ *   protocols=(default SSLParameters) modes=keyfile/full/resumed
+ *   clients=1 duration=3 (s per cell)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+
+public class WsHandshakeTest extends Thread {
+    static final int WARM_UP = 20; // handshakes per cell
+
+    final TestContext context;
+    final String[] protocols;
+    final String[] modes;
+    final int clients;
+    final int duration;
+
+    final AtomicLong errors = new AtomicLong();
+    SSLContext sharedContext;
+
+    WsHandshakeTest(TestContext context, TestOptions options) {
+        this.context = context;
+        protocols = options.getStrings("protocols",
+                new WsParameters().getSSLParameters().getProtocols());
+        modes = options.getStrings("modes", new String[]{"keyfile", "full", "resumed"});
+        clients = options.getInt("clients", 1);
+        duration = options.getInt("duration", 3);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    final WsServer.Handler serverHandler = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+            if (e != null) ws_log("Server stopped: " + e);
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    // client context trusting the key file certificate (as WebSocket.setKeyFile)
+    static SSLContext clientContext(File keyFile, String password) throws Exception {
+        KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream is = new FileInputStream(keyFile)) {
+            ks.load(is, password.toCharArray());
+        }
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(ks);
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, tmf.getTrustManagers(), new SecureRandom());
+        return ctx;
+    }
+
+    static void invalidateSessions(SSLSessionContext sessionContext) {
+        Enumeration<byte[]> ids = sessionContext.getIds();
+        while (ids.hasMoreElements()) {
+            SSLSession session = sessionContext.getSession(ids.nextElement());
+            if (session != null) session.invalidate();
+        }
+    }
+
+    // connects until the deadline (or count handshakes)
+    class Client extends Thread {
+        final WebSocket webSocket;
+        final String uri;
+        final String mode;
+        final String protocol;
+        final WsParameters wsp;
+        final long deadline;
+        final int count;
+        final LatencyHistogram latency = new LatencyHistogram();
+        int handshakes = 0;
+
+        Client(WebSocket webSocket, String uri, String mode, String protocol,
+               WsParameters wsp, long deadline, int count) {
+            this.webSocket = webSocket;
+            this.uri = uri;
+            this.mode = mode;
+            this.protocol = protocol;
+            this.wsp = wsp;
+            this.deadline = deadline;
+            this.count = count;
+        }
+
+        @Override
+        public void run() {
+            while (count > 0 ? handshakes < count : System.currentTimeMillis() < deadline) {
+                try {
+                    if (mode.equals("full")) invalidateSessions(sharedContext.getClientSessionContext());
+                    long start = System.nanoTime();
+                    WsConnection conn = webSocket.connect(uri, clientHandler, wsp).ready();
+                    latency.record(System.nanoTime() - start);
+                    if (!conn.isOpen() || (protocol != null
+                            && !protocol.equals(conn.getSSLSessionProtocol()))) {
+                        errors.incrementAndGet();
+                    }
+                    conn.close("Completed");
+                    conn.join();
+                    handshakes++;
+                } catch (Exception e) {
+                    if (errors.incrementAndGet() == 1) ws_log("Client error: " + e);
+                    if (count > 0) break;
+                }
+            }
+        }
+    }
+
+    // returns the table line
+    String cell(WebSocket webSocket, String uri, String mode, String protocol) throws Exception {
+        WsParameters wsp = new WsParameters().setConnectionSoTimeout(10000, true);
+        if (protocol != null) wsp.getSSLParameters().setProtocols(new String[]{protocol});
+        new Client(webSocket, uri, mode, protocol, wsp, 0, WARM_UP).run();
+        errors.set(0);
+        List<Client> list = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + duration * 1000L;
+        for (int i = 0; i < clients; i++) {
+            list.add(new Client(webSocket, uri, mode, protocol, wsp, deadline, 0));
+        }
+        long startCpu = GcReport.getProcessCpuNanos();
+        long startNanos = System.nanoTime();
+        for (Client client : list) client.start();
+        LatencyHistogram latency = new LatencyHistogram();
+        long handshakes = 0;
+        for (Client client : list) {
+            client.join();
+            latency.add(client.latency);
+            handshakes += client.handshakes;
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long cpu = GcReport.getProcessCpuNanos() - startCpu;
+        return String.format("%-8s %-8s %11.1f %8s %8s %8s %7s %6d",
+                protocol == null ? "-" : protocol, mode, handshakes / seconds,
+                LatencyHistogram.millis(latency.getValueAtPercentile(50)),
+                LatencyHistogram.millis(latency.getValueAtPercentile(99)),
+                LatencyHistogram.millis(latency.getMaxValue()),
+                startCpu < 0 || handshakes == 0 ? "n/a"
+                        : String.format("%.2f", cpu / 1e6 / handshakes),
+                errors.get());
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs TLS handshake rate benchmark"
+                + "\r\nProtocols: " + Arrays.toString(protocols)
+                + " Modes: " + Arrays.toString(modes)
+                + "\r\nClients: " + clients + " Duration: " + duration + " s per cell\r\n");
+        StringBuilder table = new StringBuilder(String.format("%-8s %-8s %11s %8s %8s %8s %7s %6s",
+                "protocol", "mode", "handshake/s", "p50 ms", "p99 ms", "max ms", "CPU ms", "errors"));
+        SSLContext savedDefault = null;
+        WebSocket serverSocket = null;
+        WebSocket plainSocket = null;
+        try {
+            savedDefault = SSLContext.getDefault();
+            sharedContext = clientContext(context.getKeyFile(), context.getKeyPassword());
+            SSLContext.setDefault(sharedContext);
+            InetAddress localhost = InetAddress.getByName("localhost");
+
+            plainSocket = new WebSocket(localhost);
+            WsServer plainServer = plainSocket.startServer(0, serverHandler,
+                    new WsParameters().setConnectionSoTimeout(10000, true));
+            plainServer.ready();
+            String line = cell(plainSocket,
+                    WsNetProxy.route("ws://localhost:" + plainServer.getPort()), "plain", null);
+            ws_log(line);
+            table.append("\r\n").append(line);
+            plainSocket.closeAll("Completed");
+
+            serverSocket = new WebSocket(localhost);
+            serverSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            WsServer server = serverSocket.startSecureServer(0, serverHandler,
+                    new WsParameters().setConnectionSoTimeout(10000, true));
+            server.ready();
+            String uri = WsNetProxy.route("wss://localhost:" + server.getPort());
+            WebSocket keyFileClient = new WebSocket(localhost);
+            keyFileClient.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            WebSocket sharedClient = new WebSocket(localhost); // default SSLContext
+            for (String protocol : protocols) {
+                for (String mode : modes) {
+                    try {
+                        line = cell(mode.equals("keyfile") ? keyFileClient : sharedClient,
+                                uri, mode, protocol);
+                    } catch (Exception e) {
+                        line = String.format("%-8s %-8s failed: %s", protocol, mode, e);
+                    }
+                    ws_log(line);
+                    table.append("\r\n").append(line);
+                }
+                invalidateSessions(sharedContext.getClientSessionContext());
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (plainSocket != null) plainSocket.closeAll("Completed");
+        if (serverSocket != null) serverSocket.closeAll("Completed");
+        if (savedDefault != null) SSLContext.setDefault(savedDefault);
+        ws_log("\r\n" + table);
+        ws_log("(latency: connect().ready(), CPU: process CPU per handshake, both sides)");
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * WebSocket round trip latency sweep. MIT (c) 2025 agent@local
+ *
+ * The ws/wss client-server round trip of WsWssClientServerTest as a latency
+ * sweep: message sizes x text/binary x schemes x payload buffer lengths.
+ * Each message carries its System.nanoTime() send stamp, the echo server
+ * returns it as is. Reports RTT percentile tables instead of OK/Failed.
+ *
+ * Options (runner: latency:key=value,...):
+ *   sizes=16/256/4096/65536/1048576 (bytes) modes=text/binary schemes=ws/wss
+ *   buffers=32768 (setPayloadBufferLength values) count=200 warmup=20 nodelay=false
+ * Text messages are at least 20 bytes: the decimal stamp and comma.
+ * Both payloads are built once per cell, the stamp is patched in place:
+ * the RTT does not include building the message.
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class WsLatencyTest extends Thread {
+    final TestContext context;
+    final int[] sizes;
+    final String[] modes;
+    final String[] schemes;
+    final int[] buffers;
+    final int count;
+    final int warmup;
+    final boolean tcpNoDelay;
+
+    final Semaphore echoed = new Semaphore(0);
+    volatile LatencyHistogram histogram;
+    volatile int errors;
+
+    WsLatencyTest(TestContext context, TestOptions options) {
+        this.context = context;
+        sizes = options.getInts("sizes", new int[]{16, 256, 4096, 65536, 1048576});
+        modes = options.getStrings("modes", new String[]{"text", "binary"});
+        schemes = options.getStrings("schemes", new String[]{"ws", "wss"});
+        buffers = options.getInts("buffers", new int[]{32768});
+        count = options.getInt("count", 200);
+        warmup = options.getInt("warmup", 20);
+        tcpNoDelay = options.getBoolean("nodelay", false);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    static void putStamp(byte[] payload, long stamp) {
+        for (int i = 7; i >= 0; i--) {
+            payload[i] = (byte) stamp;
+            stamp >>>= 8;
+        }
+    }
+
+    // "%019d" in place: the text payload starts with the stamp and comma
+    static void putTextStamp(byte[] text, long stamp) {
+        boolean negative = stamp < 0; // nanoTime may be negative
+        long value = Math.abs(stamp);
+        for (int i = 18; i >= (negative ? 1 : 0); i--) {
+            text[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        if (negative) text[0] = '-';
+    }
+
+    static long getStamp(byte[] payload) {
+        long stamp = 0;
+        for (int i = 0; i < 8; i++) {
+            stamp = (stamp << 8) | (payload[i] & 0xFF);
+        }
+        return stamp;
+    }
+
+    WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            long stamp;
+            if (msg.isText()) {
+                String s = msg.asString();
+                stamp = Long.parseLong(s.substring(0, s.indexOf(',')));
+            } else {
+                stamp = getStamp(msg.asByteArray());
+            }
+            long rtt = System.nanoTime() - stamp;
+            LatencyHistogram h = histogram;
+            if (h != null) h.record(rtt);
+            echoed.release();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Client onError: " + e);
+            errors++;
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            echoed.release(); // do not wait for the lost echo
+        }
+    };
+
+    // returns null if the connection is lost
+    LatencyHistogram measure(WsConnection conn, int size, boolean binary)
+            throws Exception {
+        byte[] payload = WsLoadTest.payload(Math.max(size, 8));
+        byte[] text = new byte[Math.max(size, 20)]; // "<19 digit stamp>," + padding
+        Arrays.fill(text, (byte) 'x');
+        text[19] = ',';
+        histogram = null;
+        for (int i = 0; i < warmup + count; i++) {
+            if (i == warmup) histogram = new LatencyHistogram();
+            if (!conn.isOpen()) return null;
+            long stamp = System.nanoTime();
+            if (binary) {
+                putStamp(payload, stamp);
+                conn.send(payload);
+            } else {
+                putTextStamp(text, stamp);
+                conn.send(new ByteArrayInputStream(text), true);
+            }
+            if (!echoed.tryAcquire(30, TimeUnit.SECONDS)) {
+                throw new Exception("Echo timeout");
+            }
+        }
+        return histogram;
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs/Wss round trip latency sweep"
+                + "\r\nSizes: " + Arrays.toString(sizes)
+                + "\r\nModes: " + Arrays.toString(modes)
+                + " Schemes: " + Arrays.toString(schemes)
+                + " Payload buffers: " + Arrays.toString(buffers)
+                + "\r\nRound trips per cell: " + count + " (+" + warmup + " warmup)"
+                + (tcpNoDelay ? " TCP_NODELAY" : "") + "\r\n");
+        int maxSize = 125;
+        for (int size : sizes) maxSize = Math.max(maxSize, size);
+        String header = String.format("%-4s %7s %-6s %8s %9s %9s %9s %9s %8s",
+                "", "buffer", "mode", "size", "p50 ms", "p90 ms", "p99 ms", "max ms", "MB/s");
+        StringBuilder table = new StringBuilder(header);
+        for (String scheme : schemes) {
+            for (int buffer : buffers) {
+                WebSocket webSocket = null;
+                try {
+                    webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                    if (scheme.equals("wss"))
+                        webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+                    WsParameters wsp = new WsParameters()
+                            .setMaxMessageLength(maxSize)
+                            .setPayloadBufferLength(buffer)
+                            .setConnectionSoTimeout(10000, true);
+                    WsServer server = scheme.equals("wss")
+                            ? webSocket.startSecureServer(0, new WsEchoHandler(context, tcpNoDelay), wsp)
+                            : webSocket.startServer(0, new WsEchoHandler(context, tcpNoDelay), wsp);
+                    server.ready();
+                    WsConnection conn = webSocket.connect(
+                            WsNetProxy.route(scheme + "://localhost:" + server.getPort()), clientHandler, wsp).ready();
+                    boolean lost = false;
+                    for (String mode : modes) {
+                        if (lost) break; // the next buffer and scheme
+                        for (int size : sizes) {
+                            echoed.drainPermits();
+                            LatencyHistogram h = measure(conn, size, mode.equals("binary"));
+                            if (h == null) {
+                                ws_log("Connection lost: " + conn.getStatus());
+                                lost = true;
+                                break;
+                            }
+                            String line = String.format("%-4s %7d %-6s %8d %9s %9s %9s %9s %8.2f",
+                                    scheme, buffer, mode, size,
+                                    LatencyHistogram.millis(h.getValueAtPercentile(50)),
+                                    LatencyHistogram.millis(h.getValueAtPercentile(90)),
+                                    LatencyHistogram.millis(h.getValueAtPercentile(99)),
+                                    LatencyHistogram.millis(h.getMaxValue()),
+                                    2 * size / (h.getMean() / 1e9) / 1e6); // both ways
+                            ws_log(line);
+                            table.append("\r\n").append(line);
+                        }
+                    }
+                } catch (Throwable e) {
+                    ws_log("Unexpected: " + e);
+                    e.printStackTrace();
+                }
+                if (webSocket != null) webSocket.closeAll("Completed");
+            }
+        }
+        ws_log("\r\n" + table);
+        if (errors > 0) ws_log("Client errors: " + errors);
+        ws_log("\r\nTest completed.");
+    }
+}
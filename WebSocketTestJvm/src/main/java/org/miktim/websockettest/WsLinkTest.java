@@ -0,0 +1,231 @@
+/*
+ * WebSocket network link test. MIT (c) 2025 agent@local
+ *
+ * The client connects to the loopback echo server through WsNetProxy
+ * with the named link profiles (delay, jitter, bandwidth, retransmission
+ * stalls, Nagle-like coalescing, random segment splits). For each profile:
+ *   - the handshakes completed within each handshakeSoTimeout
+ *     (setHandshakeSoTimeout) of handshakes=N attempts, connect p50 ms,
+ *   - the small message echo round trip p50/p99 ms,
+ *   - the bulk message echo time (size bytes both ways),
+ *   - idle connections with connectionSoTimeout (ping enabled):
+ *     "ok" or the close code after idle seconds (1001: no pong in time).
+ * The other scenarios run under a profile with the runner option -n:
+ *   JvmTestRunner -n 3g latency rate
+ *
+ * Options (runner: links:key=value,...):
+ *   profiles=lan/wifi/lossy-wifi/lte/3g/2g scheme=ws handshakes=5
+ *   timeouts=1000/3000/10000 (handshake ms) pings=500/2000 (ms) idle=5 (s)
+ *   echoes=20 size=16384
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class WsLinkTest extends Thread {
+    final TestContext context;
+    final String[] profiles;
+    final String scheme;
+    final int handshakes;
+    final int[] timeouts;
+    final int[] pings;
+    final int idle;
+    final int echoes;
+    final int bulkSize;
+
+    final LinkedBlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+
+    WsLinkTest(TestContext context, TestOptions options) {
+        this.context = context;
+        profiles = options.getStrings("profiles",
+                new String[]{"lan", "wifi", "lossy-wifi", "lte", "3g", "2g"});
+        scheme = options.getString("scheme", "ws");
+        handshakes = options.getInt("handshakes", 5);
+        timeouts = options.getInts("timeouts", new int[]{1000, 3000, 10000});
+        pings = options.getInts("pings", new int[]{500, 2000});
+        idle = options.getInt("idle", 5);
+        echoes = options.getInt("echoes", 20);
+        bulkSize = options.getInt("size", 16384);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    final WsServer.Handler echo = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            if (conn.isOpen()) conn.send(msg.asByteArray());
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            replies.offer(msg.asByteArray());
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    WsParameters clientParameters(int handshakeTimeout, int connectionTimeout) {
+        return new WsParameters()
+                .setMaxMessageLength(Math.max(125, bulkSize))
+                .setHandshakeSoTimeout(handshakeTimeout)
+                .setConnectionSoTimeout(connectionTimeout, true);
+    }
+
+    // millis, -1: timed out
+    long echo(WsConnection conn, byte[] message, long timeoutMillis) throws InterruptedException {
+        replies.clear();
+        long start = System.nanoTime();
+        conn.send(message);
+        byte[] reply = replies.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        return reply == null ? -1 : System.nanoTime() - start;
+    }
+
+    String measure(WebSocket webSocket, String uri) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        // handshakes per timeout
+        LatencyHistogram connect = new LatencyHistogram();
+        for (int timeout : timeouts) {
+            int ok = 0;
+            for (int i = 0; i < handshakes; i++) {
+                long start = System.nanoTime();
+                WsConnection conn = webSocket.connect(uri, clientHandler,
+                        clientParameters(timeout, 30000)).ready();
+                if (conn.isOpen()) {
+                    ok++;
+                    connect.record(System.nanoTime() - start);
+                }
+                conn.close("Completed");
+            }
+            sb.append(String.format(" %6s", ok + "/" + handshakes));
+        }
+        sb.insert(0, String.format(" %8s", connect.getTotalCount() == 0 ? "-"
+                : LatencyHistogram.millis(connect.getValueAtPercentile(50))));
+        // the idle connections first, measured in parallel with the echoes
+        WsConnection[] idlers = new WsConnection[pings.length];
+        for (int i = 0; i < pings.length; i++) {
+            idlers[i] = webSocket.connect(uri, clientHandler, clientParameters(30000, pings[i]));
+        }
+        long idleEnd = System.currentTimeMillis() + idle * 1000L;
+        // echoes
+        WsConnection conn = webSocket.connect(uri, clientHandler, clientParameters(30000, 30000)).ready();
+        LatencyHistogram rtt = new LatencyHistogram();
+        byte[] small = WsLoadTest.payload(64);
+        for (int i = 0; i < echoes && conn.isOpen(); i++) {
+            long nanos = echo(conn, small, 30000);
+            if (nanos >= 0) rtt.record(nanos);
+        }
+        long bulk = conn.isOpen() ? echo(conn, WsLoadTest.payload(bulkSize), 120000) : -1;
+        conn.close("Completed");
+        sb.append(String.format(" %8s %8s %9s",
+                rtt.getTotalCount() == 0 ? "-" : LatencyHistogram.millis(rtt.getValueAtPercentile(50)),
+                rtt.getTotalCount() == 0 ? "-" : LatencyHistogram.millis(rtt.getValueAtPercentile(99)),
+                bulk < 0 ? "failed" : LatencyHistogram.millis(bulk)));
+        // idle connections
+        long wait = idleEnd - System.currentTimeMillis();
+        if (wait > 0) Thread.sleep(wait);
+        for (WsConnection idler : idlers) {
+            sb.append(String.format(" %6s", idler.isOpen() ? "ok"
+                    : String.valueOf(idler.getStatus().code)));
+            idler.close("Completed");
+        }
+        return sb.toString();
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs network link test"
+                + "\r\nScheme: " + scheme + " Handshakes: " + handshakes
+                + " per handshakeSoTimeout " + Arrays.toString(timeouts) + " ms"
+                + "\r\nEchoes: " + echoes + " Bulk: " + bulkSize + " bytes"
+                + " Idle: " + idle + " s with ping connectionSoTimeout " + Arrays.toString(pings) + " ms"
+                + "\r\nProfiles:");
+        StringBuilder header = new StringBuilder(String.format("%-10s %8s", "profile", "hs p50"));
+        for (int timeout : timeouts) header.append(String.format(" %6s", "h" + timeout));
+        header.append(String.format(" %8s %8s %9s", "rtt p50", "rtt p99", "bulk ms"));
+        for (int ping : pings) header.append(String.format(" %6s", "p" + ping));
+        StringBuilder table = new StringBuilder(header);
+        WebSocket webSocket = null;
+        try {
+            for (String name : profiles) ws_log("  " + WsNetProxy.Profile.get(name));
+            ws_log("");
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            if (scheme.equals("wss"))
+                webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            WsParameters serverWsp = new WsParameters()
+                    .setMaxMessageLength(Math.max(125, bulkSize))
+                    .setHandshakeSoTimeout(30000)
+                    .setConnectionSoTimeout(60000, true);
+            WsServer server = scheme.equals("wss")
+                    ? webSocket.startSecureServer(0, echo, serverWsp)
+                    : webSocket.startServer(0, echo, serverWsp);
+            server.ready();
+            for (String name : profiles) {
+                WsNetProxy proxy = new WsNetProxy(WsNetProxy.Profile.get(name),
+                        "localhost", server.getPort());
+                String line;
+                try {
+                    line = String.format("%-10s", name)
+                            + measure(webSocket, scheme + "://localhost:" + proxy.getPort());
+                } catch (Exception e) {
+                    line = String.format("%-10s failed: %s", name, e);
+                }
+                proxy.close();
+                ws_log(line);
+                table.append("\r\n").append(line);
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (webSocket != null) webSocket.closeAll("Completed");
+        ws_log("\r\n" + table);
+        ws_log("(hN: handshakes completed within handshakeSoTimeout N ms,"
+                + " pN: idle connection with ping connectionSoTimeout N ms)");
+        ws_log("\r\nTest completed.");
+    }
+}
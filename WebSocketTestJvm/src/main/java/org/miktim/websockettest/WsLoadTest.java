@@ -0,0 +1,227 @@
+/*
+ * WebSocket closed-loop load test. MIT (c) 2025 agent@local
+ *
+ * N concurrent clients, each sends M messages of S bytes to the echo server
+ * one at a time (next message after the echo). Reports aggregate msgs/s, MB/s
+ * and per-connection fairness.
+ *
+ * Options (runner: load:key=value,...):
+ *   clients=10 messages=1000 size=1024 binary=true scheme=ws timeout=60 (seconds)
+ *   nodelay=false (TCP_NODELAY: WsIo.sendFrame writes the header and the payload
+ *   separately, with Nagle's algorithm small echoes wait for the delayed ACKs)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class WsLoadTest extends Thread {
+    final TestContext context;
+    final int clients;
+    final int messages;
+    final int messageSize;
+    final boolean binary;
+    final String scheme;
+    final int timeout;
+    final boolean tcpNoDelay;
+
+    byte[] payload;
+    String text;
+    CountDownLatch completed;
+
+    WsLoadTest(TestContext context, TestOptions options) {
+        this.context = context;
+        clients = options.getInt("clients", 10);
+        messages = options.getInt("messages", 1000);
+        messageSize = options.getInt("size", 1024);
+        binary = options.getBoolean("binary", true);
+        scheme = options.getString("scheme", "ws");
+        timeout = options.getInt("timeout", 60);
+        tcpNoDelay = options.getBoolean("nodelay", false);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) ('a' + i % 26); // ASCII, valid UTF-8 text too
+        }
+        return payload;
+    }
+
+    class LoadClient implements WsConnection.Handler {
+        WsConnection conn;
+        volatile int received = 0;
+        volatile int errors = 0;
+        volatile long startNanos;
+        volatile long endNanos = 0;
+        final AtomicBoolean countedDown = new AtomicBoolean();
+
+        void send() {
+            if (binary) conn.send(payload);
+            else conn.send(text);
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            send();
+        }
+
+        // counts the client down once: completed, closed or not connected
+        void done() {
+            if (countedDown.compareAndSet(false, true)) completed.countDown();
+        }
+
+        boolean isCompleted() {
+            return endNanos != 0;
+        }
+
+        double rate() { // msgs/s
+            return received / ((endNanos - startNanos) / 1e9);
+        }
+
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            int length = msg.isText() ? msg.asString().length() : msg.asByteArray().length;
+            if (length != messageSize) errors++;
+            if (++received < messages) {
+                send();
+            } else {
+                endNanos = System.nanoTime();
+                done();
+            }
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (!isCompleted()) {
+                ws_log("Client closed before completion: " + status);
+                done();
+            }
+        }
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs closed-loop load test"
+                + "\r\nClients: " + clients
+                + " Messages per client: " + messages
+                + " Message size: " + messageSize + (binary ? " binary" : " text")
+                + " Scheme: " + scheme + (tcpNoDelay ? " TCP_NODELAY" : "")
+                + "\r\nTest will be terminated after " + timeout + " seconds\r\n");
+        WebSocket webSocket = null;
+        try {
+            payload = payload(messageSize);
+            text = new String(payload, "UTF-8");
+            completed = new CountDownLatch(clients);
+
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            if (scheme.equals("wss"))
+                webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            WsParameters wsp = new WsParameters()
+                    .setMaxMessageLength(Math.max(messageSize, 125))
+                    .setHandshakeSoTimeout(10000)
+                    .setConnectionSoTimeout(10000, true);
+            WsServer server = scheme.equals("wss")
+                    ? webSocket.startSecureServer(0, new WsEchoHandler(context, tcpNoDelay), wsp)
+                    : webSocket.startServer(0, new WsEchoHandler(context, tcpNoDelay), wsp);
+            server.ready();
+            String address = WsNetProxy.route(scheme + "://localhost:" + server.getPort());
+
+            long t0 = System.nanoTime();
+            List<LoadClient> loadClients = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                LoadClient client = new LoadClient();
+                client.conn = webSocket.connect(address, client, wsp);
+                loadClients.add(client);
+            }
+            int connected = 0;
+            for (LoadClient client : loadClients) {
+                if (client.conn.ready() != null && client.conn.isOpen()) connected++;
+            }
+            ws_log(String.format("Connected: %d of %d in %d ms",
+                    connected, clients, (System.nanoTime() - t0) / 1000000));
+
+            long startNanos = System.nanoTime();
+            for (LoadClient client : loadClients) {
+                if (client.conn.isOpen()) client.start();
+                else client.done();
+            }
+            if (!completed.await(timeout, TimeUnit.SECONDS)) {
+                ws_log("\r\nTime is over!");
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            webSocket.closeAll("Completed");
+
+            report(loadClients, elapsedNanos);
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+            if (webSocket != null) webSocket.closeAll("Unexpected");
+        }
+        ws_log("\r\nTest completed.");
+    }
+
+    void report(List<LoadClient> loadClients, long elapsedNanos) {
+        long total = 0;
+        int completedClients = 0;
+        int errors = 0;
+        List<Double> rates = new ArrayList<>();
+        for (LoadClient client : loadClients) {
+            total += client.received;
+            errors += client.errors;
+            if (client.isCompleted()) {
+                completedClients++;
+                rates.add(client.rate());
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        ws_log(String.format("\r\nCompleted clients: %d of %d, length errors: %d",
+                completedClients, loadClients.size(), errors));
+        ws_log(String.format("Elapsed: %.3f s, echoed messages: %d", seconds, total));
+        ws_log(String.format("Throughput: %.1f msgs/s, %.2f MB/s (payload, one way)",
+                total / seconds, total * (double) messageSize / seconds / 1e6));
+        if (rates.isEmpty()) return;
+
+        double[] ra = new double[rates.size()];
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < ra.length; i++) {
+            ra[i] = rates.get(i);
+            sum += ra[i];
+            sumSquares += ra[i] * ra[i];
+        }
+        Arrays.sort(ra);
+        ws_log(String.format("Per connection msgs/s: min %.1f median %.1f max %.1f",
+                ra[0], ra[ra.length / 2], ra[ra.length - 1]));
+// Jain's fairness index: 1.0 - all connections served equally, 1/n - one connection served
+        ws_log(String.format("Fairness (Jain's index): %.3f",
+                (sum * sum) / (ra.length * sumSquares)));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+
+import java.net.InetAddress;
+
+/*
+ * Offline stand-in for the wss://websocketstest.com/service:
+ * the WsTestService commands (connected, version, echo, ping,
+ * fragments, timer) on a loopback WsServer. The wss server uses
+ * the test key file (certificates/keypair.p12 on the JVM), the clients
+ * trust it with WebSocket.setKeyFile() (see newClient()).
+ *   WsLocalService service = new WsLocalService(context, "wss", 0, 1000);
+ *   service.newClient().connect(service.getUri(), handler, wsp);
+ *   ...
+ *   service.close();
+ */
+public class WsLocalService {
+    final TestContext context;
+    final String scheme;
+    final WebSocket webSocket;
+    final WsServer server;
+
+    // port 0: any free port, backlog: the pending connections
+    public WsLocalService(TestContext context, String scheme, int port, int backlog)
+            throws Exception {
+        this.context = context;
+        this.scheme = scheme;
+        webSocket = new WebSocket(InetAddress.getByName("localhost"));
+        if (scheme.equals("wss"))
+            webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+        WsParameters wsp = new WsParameters()
+                .setMaxMessageLength(10000) // as the remote service
+                .setConnectionSoTimeout(20000, true)
+                .setBacklog(backlog);
+        WsTestService service = new WsTestService(context).setVerbose(false);
+        server = scheme.equals("wss")
+                ? webSocket.startSecureServer(port, service, wsp)
+                : webSocket.startServer(port, service, wsp);
+        server.ready();
+        if (!server.isActive()) {
+            webSocket.closeAll("Failed");
+            throw new IllegalStateException("Service not started: " + server.getError());
+        }
+    }
+
+    public String getUri() {
+        return WsNetProxy.route(scheme + "://localhost:" + server.getPort() + "/service");
+    }
+
+    public WsServer getServer() {
+        return server;
+    }
+
+    // client instance trusting the service certificate
+    public WebSocket newClient() throws Exception {
+        WebSocket client = new WebSocket(InetAddress.getByName("localhost"));
+        if (scheme.equals("wss"))
+            client.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+        return client;
+    }
+
+    public void close() {
+        webSocket.closeAll("Shutdown");
+    }
+}
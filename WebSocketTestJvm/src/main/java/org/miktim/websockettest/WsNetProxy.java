@@ -0,0 +1,383 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * In-process TCP proxy emulating a network link between the client
+ * (WebSocket.connect) and the WsServer. Per direction (up: to the server,
+ * down: to the client) the bytes are
+ *   - paced to the bandwidth (kbit/s, 0: unlimited),
+ *   - delayed by delay + random(0..jitter) ms one way,
+ *   - with the loss probability held for rto ms (TCP retransmission:
+ *     the stream stays ordered, the following bytes wait - head of line),
+ *   - coalesced for coalesce ms (Nagle-like) before the write,
+ *   - written in random segments of 1..segment bytes (splits the frames).
+ * Up to 256 chunks of 4 kB are buffered per direction, then the reader
+ * blocks and TCP pushes back on the sender.
+ *   WsNetProxy proxy = new WsNetProxy(WsNetProxy.Profile.get("lte"), "localhost", port);
+ *   webSocket.connect("wss://localhost:" + proxy.getPort(), handler, wsp);
+ * The runner option -n profile routes the loopback scenarios through
+ * the proxy: they connect to WsNetProxy.route(uri).
+ */
+public class WsNetProxy {
+    static final int CHUNK = 4096;
+    static final int QUEUED_CHUNKS = 256;
+
+    /*
+     * Link profile, the named profiles:
+     *   none, lan, wifi, lossy-wifi, lte, 3g, 2g
+     * Spec: name[:key=value,...], keys: delay jitter up down loss rto
+     * coalesce segment, e.g. "lte:delay=60,loss=0.01"
+     */
+    public static class Profile {
+        String name;
+        int delay = 0;      // one way, ms
+        int jitter = 0;     // ms
+        int upKbps = 0;     // client to server, 0: unlimited
+        int downKbps = 0;   // server to client
+        double loss = 0;    // chunk probability
+        int rto = 200;      // retransmission delay, ms
+        int coalesce = 0;   // ms
+        int segment = 0;    // max bytes per write, 0: as read
+
+        Profile(String name, int delay, int jitter, int upKbps, int downKbps,
+                double loss, int coalesce, int segment) {
+            this.name = name;
+            this.delay = delay;
+            this.jitter = jitter;
+            this.upKbps = upKbps;
+            this.downKbps = downKbps;
+            this.loss = loss;
+            this.coalesce = coalesce;
+            this.segment = segment;
+        }
+
+        public static String[] names() {
+            return new String[]{"none", "lan", "wifi", "lossy-wifi", "lte", "3g", "2g"};
+        }
+
+        public static Profile get(String spec) {
+            String[] sa = spec.split(":", 2);
+            Profile profile;
+            switch (sa[0]) {
+                case ("none"):
+                    profile = new Profile("none", 0, 0, 0, 0, 0, 0, 0);
+                    break;
+                case ("lan"):
+                    profile = new Profile("lan", 1, 0, 100000, 100000, 0, 0, 1460);
+                    break;
+                case ("wifi"):
+                    profile = new Profile("wifi", 3, 5, 30000, 50000, 0, 2, 1460);
+                    break;
+                case ("lossy-wifi"):
+                    profile = new Profile("lossy-wifi", 5, 20, 5000, 10000, 0.02, 2, 1460);
+                    break;
+                case ("lte"):
+                    profile = new Profile("lte", 25, 10, 5000, 20000, 0.001, 0, 1400);
+                    break;
+                case ("3g"):
+                    profile = new Profile("3g", 100, 40, 384, 1600, 0.005, 10, 1400);
+                    break;
+                case ("2g"):
+                    profile = new Profile("2g", 300, 100, 64, 200, 0.01, 40, 576);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown network profile: " + sa[0]);
+            }
+            if (sa.length > 1) {
+                TestOptions options = new TestOptions(sa[1]);
+                profile.name = spec;
+                profile.delay = options.getInt("delay", profile.delay);
+                profile.jitter = options.getInt("jitter", profile.jitter);
+                profile.upKbps = options.getInt("up", profile.upKbps);
+                profile.downKbps = options.getInt("down", profile.downKbps);
+                profile.loss = Double.parseDouble(options.getString("loss", String.valueOf(profile.loss)));
+                profile.rto = options.getInt("rto", profile.rto);
+                profile.coalesce = options.getInt("coalesce", profile.coalesce);
+                profile.segment = options.getInt("segment", profile.segment);
+            }
+            return profile;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (delay %d ms, jitter %d ms, up %s, down %s kbit/s,"
+                            + " loss %.3f, rto %d ms, coalesce %d ms, segment %d)",
+                    name, delay, jitter, upKbps == 0 ? "-" : String.valueOf(upKbps),
+                    downKbps == 0 ? "-" : String.valueOf(downKbps),
+                    loss, rto, coalesce, segment);
+        }
+    }
+
+    static volatile Profile global; // the runner -n option
+    static final ConcurrentHashMap<String, WsNetProxy> routes = new ConcurrentHashMap<>();
+
+    public static void setGlobalProfile(Profile profile) {
+        global = profile;
+    }
+
+    public static Profile getGlobalProfile() {
+        return global;
+    }
+
+    // the uri through the proxy of the global profile, unchanged without it
+    public static String route(String uri) {
+        Profile profile = global;
+        if (profile == null) return uri;
+        try {
+            URI u = new URI(uri);
+            if (!"localhost".equals(u.getHost())) return uri; // the loopback scenarios only
+            int port = u.getPort() < 0 ? (u.getScheme().equals("wss") ? 443 : 80) : u.getPort();
+            String key = u.getHost() + ":" + port;
+            WsNetProxy proxy = routes.get(key);
+            if (proxy == null) {
+                synchronized (routes) {
+                    proxy = routes.get(key);
+                    if (proxy == null) {
+                        proxy = new WsNetProxy(profile, u.getHost(), port);
+                        routes.put(key, proxy);
+                    }
+                }
+            }
+            return new URI(u.getScheme(), u.getUserInfo(), u.getHost(), proxy.getPort(),
+                    u.getPath(), u.getQuery(), u.getFragment()).toString();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Route failed: " + uri, e);
+        }
+    }
+
+    public static void closeRoutes() {
+        for (WsNetProxy proxy : routes.values()) proxy.close();
+        routes.clear();
+    }
+
+    final Profile profile;
+    final InetSocketAddress target;
+    final ServerSocket serverSocket;
+    final List<Socket> sockets = new ArrayList<>();
+    volatile boolean closed = false;
+
+    public WsNetProxy(Profile profile, String targetHost, int targetPort) throws IOException {
+        this.profile = profile;
+        target = new InetSocketAddress(targetHost, targetPort);
+        serverSocket = new ServerSocket(0, 100, InetAddress.getByName("localhost"));
+        Thread acceptor = new Thread("WsNetProxy" + serverSocket.getLocalPort()) {
+            @Override
+            public void run() {
+                while (!closed) {
+                    try {
+                        accept(serverSocket.accept());
+                    } catch (IOException e) {
+                        if (!closed) e.printStackTrace();
+                    }
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    void accept(Socket client) {
+        Socket server = new Socket();
+        try {
+            server.connect(target, 10000);
+            client.setTcpNoDelay(true); // the proxy decides the segments
+            server.setTcpNoDelay(true);
+            synchronized (sockets) {
+                sockets.add(client);
+                sockets.add(server);
+            }
+            AtomicInteger pipes = new AtomicInteger(2);
+            new Pipe(client, server, profile.upKbps, pipes).start();
+            new Pipe(server, client, profile.downKbps, pipes).start();
+        } catch (IOException e) {
+            closeQuietly(client);
+            closeQuietly(server);
+        }
+    }
+
+    static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        synchronized (sockets) {
+            for (Socket socket : sockets) closeQuietly(socket);
+            sockets.clear();
+        }
+    }
+
+    static class Chunk {
+        final byte[] data; // null: end of stream
+        final int length;
+        final long dueNanos;
+
+        Chunk(byte[] data, int length, long dueNanos) {
+            this.data = data;
+            this.length = length;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    // one direction: the reader schedules the chunks, the writer delivers them
+    class Pipe extends Thread {
+        final Socket from;
+        final Socket to;
+        final int kbps;
+        final AtomicInteger pipes; // of the connection
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        final Random random = new Random();
+        volatile boolean closed = false; // the writer failed
+
+        Pipe(Socket from, Socket to, int kbps, AtomicInteger pipes) {
+            this.from = from;
+            this.to = to;
+            this.kbps = kbps;
+            this.pipes = pipes;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Thread writer = new Thread(getName() + "Writer") {
+                @Override
+                public void run() {
+                    write();
+                }
+            };
+            writer.setDaemon(true);
+            writer.start();
+            long linkFree = 0; // the bandwidth pacing
+            long lastDue = 0;
+            try {
+                InputStream is = from.getInputStream();
+                while (true) {
+                    byte[] data = new byte[CHUNK];
+                    int length = is.read(data);
+                    if (length < 0) break;
+                    long now = System.nanoTime();
+                    long due = now;
+                    if (kbps > 0) {
+                        linkFree = Math.max(linkFree, now) + length * 8L * 1000000L / kbps;
+                        due = linkFree;
+                    }
+                    due += TimeUnit.MILLISECONDS.toNanos(profile.delay
+                            + (profile.jitter > 0 ? random.nextInt(profile.jitter + 1) : 0));
+                    if (profile.loss > 0 && random.nextDouble() < profile.loss) {
+                        due += TimeUnit.MILLISECONDS.toNanos(profile.rto);
+                    }
+                    lastDue = Math.max(lastDue, due); // the stream stays ordered
+                    if (!put(new Chunk(data, length, lastDue))) return;
+                }
+            } catch (Exception e) {
+                // closed
+            }
+            put(new Chunk(null, 0, lastDue));
+        }
+
+        // false: the writer failed, nobody takes the chunks
+        boolean put(Chunk chunk) {
+            try {
+                while (!closed) {
+                    if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) return true;
+                }
+            } catch (InterruptedException e) {
+                // the writer failed
+            }
+            return false;
+        }
+
+        void waitUntil(long dueNanos) {
+            long now;
+            while ((now = System.nanoTime()) < dueNanos) LockSupport.parkNanos(dueNanos - now);
+        }
+
+        void write() {
+            try {
+                OutputStream os = to.getOutputStream();
+                byte[] buffer = new byte[CHUNK * 16];
+                while (true) {
+                    Chunk chunk = queue.take();
+                    waitUntil(chunk.dueNanos);
+                    if (chunk.data == null) break;
+                    int length = 0;
+                    System.arraycopy(chunk.data, 0, buffer, 0, chunk.length);
+                    length += chunk.length;
+                    if (profile.coalesce > 0) { // collect the chunks due within the window
+                        long windowEnd = System.nanoTime()
+                                + TimeUnit.MILLISECONDS.toNanos(profile.coalesce);
+                        Chunk next;
+                        while (length + CHUNK <= buffer.length
+                                && (next = queue.peek()) != null
+                                && next.data != null && next.dueNanos <= windowEnd) {
+                            queue.poll();
+                            waitUntil(next.dueNanos);
+                            System.arraycopy(next.data, 0, buffer, length, next.length);
+                            length += next.length;
+                        }
+                    }
+                    for (int off = 0; off < length; ) {
+                        int segment = profile.segment > 0
+                                ? Math.min(length - off, 1 + random.nextInt(profile.segment))
+                                : length - off;
+                        os.write(buffer, off, segment);
+                        off += segment;
+                    }
+                    os.flush();
+                }
+                to.shutdownOutput();
+            } catch (Exception e) {
+                pipes.set(1);
+                closed = true; // release the reader blocked on the full queue
+                queue.clear();
+                interrupt();
+            }
+            if (pipes.decrementAndGet() <= 0) { // both directions done or failed
+                closeQuietly(from);
+                closeQuietly(to);
+                synchronized (sockets) {
+                    sockets.remove(from);
+                    sockets.remove(to);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * WebSocket NIO load driver. MIT (c) 2025 agent@local
+ *
+ * Thousands of simulated clients over a few java.nio Selector threads
+ * instead of WebSocket.connect (two threads per client). The driver
+ * speaks the client handshake (the RFC 6455 sample key: the request and
+ * the expected Sec-WebSocket-Accept are constants) and the framing:
+ * one pre-masked binary message frame is shared by all the clients.
+ * Each client sends the message every interval ms after the echo
+ * (interval=0: closed loop), answers the server pings with pongs
+ * and counts the round trip time.
+ * By default the driver starts an in-process WsServer echo (WsEchoHandler),
+ * url=ws://host:port/path loads an external server.
+ *
+ * Options (runner: nio:key=value,...):
+ *   clients=10000 threads=2 (selectors) connectRate=1000 (connections/s)
+ *   interval=1000 (ms) size=64 duration=30 (s) url= nodelay=true
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsNioLoadDriver extends Thread {
+    // RFC 6455 1.3 sample
+    static final String KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+    static final String ACCEPT = "s3pPLMBiTxaQ9kYGzzhZRbK+xOo=";
+    static final byte[] MASK = {0x37, (byte) 0xFA, 0x21, 0x3D};
+
+    final TestContext context;
+    final int clients;
+    final int threads;
+    final int connectRate;
+    final int interval;
+    final int messageSize;
+    final int duration;
+    final String url;
+    final boolean tcpNoDelay;
+
+    ByteBuffer handshake;
+    ByteBuffer messageFrame;
+    ByteBuffer closeFrame;
+    long intervalNanos;
+
+    final AtomicLong connected = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong closed = new AtomicLong();
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong received = new AtomicLong();
+    final LatencyHistogram rtt = new LatencyHistogram();
+    final LatencyHistogram connectTime = new LatencyHistogram();
+    volatile String lastError;
+
+    WsNioLoadDriver(TestContext context, TestOptions options) {
+        this.context = context;
+        clients = options.getInt("clients", 10000);
+        threads = options.getInt("threads", 2);
+        connectRate = options.getInt("connectRate", 1000);
+        interval = options.getInt("interval", 1000);
+        messageSize = options.getInt("size", 64);
+        duration = options.getInt("duration", 30);
+        url = options.getString("url", null);
+        tcpNoDelay = options.getBoolean("nodelay", true);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // masked client frame: FIN + opcode
+    static ByteBuffer maskedFrame(int opcode, byte[] payload) {
+        int len = payload.length;
+        int headerLen = len < 126 ? 6 : len < 65536 ? 8 : 14;
+        ByteBuffer frame = ByteBuffer.allocate(headerLen + len);
+        frame.put((byte) (0x80 | opcode));
+        if (len < 126) {
+            frame.put((byte) (0x80 | len));
+        } else if (len < 65536) {
+            frame.put((byte) (0x80 | 126)).putShort((short) len);
+        } else {
+            frame.put((byte) (0x80 | 127)).putLong(len);
+        }
+        frame.put(MASK);
+        for (int i = 0; i < len; i++) frame.put((byte) (payload[i] ^ MASK[i & 3]));
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    static final int HANDSHAKE = 0;
+    static final int OPEN = 1;
+    static final int CLOSING = 2;
+
+    class NioClient {
+        final SocketChannel channel;
+        final NioWorker worker;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>(2);
+        SelectionKey key;
+        int state = HANDSHAKE;
+        long connectNanos;
+        long sentNanos;
+        long nextSendNanos;
+        boolean awaitingEcho;
+        long payloadLeft; // of the current data frame
+        boolean inFrame;
+        boolean finalFrame;
+        boolean closeSent;
+
+        NioClient(SocketChannel channel, NioWorker worker) {
+            this.channel = channel;
+            this.worker = worker;
+        }
+
+        void write(ByteBuffer buffer) throws IOException {
+            out.add(buffer);
+            flush();
+        }
+
+        void flush() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer head = out.peek();
+                channel.write(head);
+                if (head.hasRemaining()) break;
+                out.poll();
+            }
+            int ops = SelectionKey.OP_READ | (out.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+            if (key.interestOps() != ops) key.interestOps(ops);
+        }
+
+        void sendMessage(long now) throws IOException {
+            if (state != OPEN) return;
+            sentNanos = now;
+            awaitingEcho = true;
+            sent.incrementAndGet();
+            write(messageFrame.duplicate());
+        }
+
+        void onConnect() throws IOException {
+            if (!channel.finishConnect()) return; // still OP_CONNECT
+            if (tcpNoDelay) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            write(handshake.duplicate());
+        }
+
+        void onRead() throws IOException {
+            int n = channel.read(in);
+            if (n < 0) {
+                close("Connection closed by server");
+                return;
+            }
+            in.flip();
+            if (state == HANDSHAKE && !readHandshake()) {
+                in.compact();
+                return;
+            }
+            readFrames();
+            in.compact();
+        }
+
+        // false: the response head is incomplete
+        boolean readHandshake() throws IOException {
+            int end = -1;
+            for (int i = in.position(); i + 3 < in.limit(); i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n'
+                        && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    end = i + 4;
+                    break;
+                }
+            }
+            if (end < 0) {
+                if (in.limit() == in.capacity()) close("Handshake too long");
+                return false;
+            }
+            byte[] head = new byte[end - in.position()];
+            in.get(head);
+            String response = new String(head, "ISO-8859-1");
+            if (!response.startsWith("HTTP/1.1 101") || !response.contains(ACCEPT)) {
+                close(response.split("\r\n")[0]);
+                return false;
+            }
+            state = OPEN;
+            connected.incrementAndGet();
+            connectTime.record(System.nanoTime() - connectNanos);
+            // spread the first messages over the interval
+            nextSendNanos = System.nanoTime() + (long) (Math.random() * intervalNanos);
+            worker.schedule(this);
+            return true;
+        }
+
+        void readFrames() throws IOException {
+            while (state != CLOSING) {
+                if (inFrame) {
+                    int skip = (int) Math.min(payloadLeft, in.remaining());
+                    in.position(in.position() + skip);
+                    payloadLeft -= skip;
+                    if (payloadLeft > 0) return;
+                    inFrame = false;
+                    if (finalFrame) onMessage();
+                    continue;
+                }
+                if (in.remaining() < 2) return;
+                int p = in.position();
+                int b0 = in.get(p) & 0xFF;
+                int len = in.get(p + 1) & 0x7F;
+                int headerLen = len == 126 ? 4 : len == 127 ? 10 : 2;
+                if (in.remaining() < headerLen) return;
+                long payloadLen = len == 126 ? in.getShort(p + 2) & 0xFFFF
+                        : len == 127 ? in.getLong(p + 2) : len;
+                int opcode = b0 & 0x0F;
+                if (opcode >= 8) { // control frame
+                    if (in.remaining() < headerLen + payloadLen) return;
+                    in.position(p + headerLen);
+                    byte[] payload = new byte[(int) payloadLen];
+                    in.get(payload);
+                    if (opcode == 9) { // ping
+                        write(maskedFrame(0xA, payload));
+                    } else if (opcode == 8) {
+                        if (!closeSent) write(closeFrame.duplicate());
+                        close(null);
+                    }
+                    continue;
+                }
+                in.position(p + headerLen);
+                payloadLeft = payloadLen;
+                finalFrame = (b0 & 0x80) != 0;
+                inFrame = true;
+            }
+        }
+
+        void onMessage() {
+            if (!awaitingEcho) return;
+            awaitingEcho = false;
+            long now = System.nanoTime();
+            rtt.record(now - sentNanos);
+            received.incrementAndGet();
+            nextSendNanos = Math.max(now, sentNanos + intervalNanos);
+            worker.schedule(this);
+        }
+
+        // every client is counted once: failed (handshake) or connected, then closed
+        void close(String error) {
+            if (state == HANDSHAKE) {
+                failed.incrementAndGet();
+            } else if (state == OPEN) {
+                connected.decrementAndGet();
+                closed.incrementAndGet();
+            }
+            state = CLOSING;
+            if (error != null) lastError = error;
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    class NioWorker extends Thread {
+        final Selector selector;
+        final ConcurrentLinkedQueue<NioClient> registrations = new ConcurrentLinkedQueue<>();
+        final PriorityQueue<NioClient> timeline = new PriorityQueue<>(1024,
+                new java.util.Comparator<NioClient>() {
+                    @Override
+                    public int compare(NioClient c1, NioClient c2) {
+                        return Long.compare(c1.nextSendNanos, c2.nextSendNanos);
+                    }
+                });
+        volatile boolean running = true;
+        volatile boolean closing = false;
+        boolean closeSent = false;
+
+        NioWorker(int id) throws IOException {
+            super("NioWorker-" + id);
+            selector = Selector.open();
+        }
+
+        void add(NioClient client) {
+            registrations.add(client);
+            selector.wakeup();
+        }
+
+        void schedule(NioClient client) {
+            timeline.add(client);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    if (closing && !closeSent) {
+                        closeSent = true;
+                        closeAll();
+                    }
+                    long now = System.nanoTime();
+                    while (!closing && !timeline.isEmpty() && timeline.peek().nextSendNanos <= now) {
+                        NioClient client = timeline.poll();
+                        try {
+                            client.sendMessage(now);
+                        } catch (IOException | RuntimeException e) {
+                            client.close(e.toString());
+                        }
+                    }
+                    long timeout = timeline.isEmpty() || closing ? 100
+                            : Math.max(1, (timeline.peek().nextSendNanos - now) / 1000000);
+                    selector.select(timeout);
+                    NioClient client;
+                    while ((client = registrations.poll()) != null) {
+                        client.key = client.channel.register(
+                                selector, SelectionKey.OP_CONNECT, client);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        client = (NioClient) key.attachment();
+                        try {
+                            if (!key.isValid()) continue;
+                            if (key.isConnectable()) client.onConnect();
+                            else if (key.isWritable()) client.flush();
+                            if (key.isValid() && key.isReadable()) client.onRead();
+                        } catch (IOException | RuntimeException e) { // per client
+                            client.close(e.toString());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                ws_log("Selector error: " + e);
+            }
+        }
+
+        void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                NioClient client = (NioClient) key.attachment();
+                if (client.state == OPEN) {
+                    try {
+                        client.closeSent = true;
+                        client.write(closeFrame.duplicate());
+                    } catch (Exception ignore) {
+                    }
+                }
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+            try {
+                join(1000);
+                for (SelectionKey key : selector.keys()) ((NioClient) key.attachment()).close(null);
+                selector.close();
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    void progress(long seconds, long startSent, long startReceived, long startNanos) {
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        ws_log(String.format("%4ds connected %6d failed %5d closed %5d sent/s %8.0f recv/s %8.0f rtt %s",
+                seconds, connected.get(), failed.get(), closed.get(),
+                (sent.get() - startSent) / elapsed, (received.get() - startReceived) / elapsed,
+                rtt.getTotalCount() == 0 ? "-" : rtt.percentiles()));
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs NIO load driver"
+                + "\r\nClients: " + clients + " Selector threads: " + threads
+                + " Connect rate: " + connectRate + "/s"
+                + "\r\nMessage: " + messageSize + " bytes every " + interval + " ms"
+                + " Duration: " + duration + " s" + (tcpNoDelay ? " TCP_NODELAY" : "")
+                + "\r\nServer: " + (url == null ? "in-process WsServer echo" : url) + "\r\n");
+        WebSocket webSocket = null;
+        NioWorker[] workers = new NioWorker[threads];
+        try {
+            URI uri;
+            if (url == null) {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                WsParameters wsp = new WsParameters()
+                        .setHandshakeSoTimeout(30000)
+                        .setConnectionSoTimeout(30000, true)
+                        .setMaxMessageLength(Math.max(125, messageSize));
+                WsServer server = webSocket.startServer(0, new WsEchoHandler(context, tcpNoDelay), wsp);
+                server.ready();
+                uri = new URI(WsNetProxy.route("ws://localhost:" + server.getPort() + "/"));
+            } else {
+                uri = new URI(url);
+            }
+            int port = uri.getPort() < 0 ? 80 : uri.getPort();
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            handshake = ByteBuffer.wrap(("GET " + path + " HTTP/1.1\r\n"
+                    + "Host: " + uri.getHost() + ":" + port + "\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: " + KEY + "\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes("ISO-8859-1")).asReadOnlyBuffer();
+            messageFrame = maskedFrame(0x2, WsLoadTest.payload(messageSize));
+            closeFrame = maskedFrame(0x8, new byte[]{0x03, (byte) 0xE8}); // 1000
+            intervalNanos = interval * 1000000L;
+            InetSocketAddress address = new InetSocketAddress(uri.getHost(), port);
+
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new NioWorker(i);
+                workers[i].start();
+            }
+            long startNanos = System.nanoTime();
+            long nextProgress = 1;
+            for (int i = 0; i < clients; i++) {
+                long due = startNanos + i * 1000000000L / connectRate;
+                long now;
+                while ((now = System.nanoTime()) < due) Thread.sleep(1);
+                if ((now - startNanos) / 1000000000L >= nextProgress) {
+                    progress(nextProgress++, 0, 0, startNanos);
+                }
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                NioWorker worker = workers[i % threads];
+                NioClient client = new NioClient(channel, worker);
+                client.connectNanos = System.nanoTime();
+                channel.connect(address);
+                worker.add(client);
+            }
+            long deadline = System.currentTimeMillis() + 30000; // handshakes
+            while (connected.get() + failed.get() + closed.get() < clients
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            ws_log(String.format("Connected %d clients in %.1f s, connect %s",
+                    connected.get(), (System.nanoTime() - startNanos) / 1e9,
+                    connectTime.percentiles()));
+
+            rtt.reset();
+            long startSent = sent.get();
+            long startReceived = received.get();
+            startNanos = System.nanoTime();
+            for (int s = 1; s <= duration; s++) {
+                Thread.sleep(Math.max(0, startNanos / 1000000 + s * 1000L - System.nanoTime() / 1000000));
+                progress(s, startSent, startReceived, startNanos);
+            }
+            double elapsed = (System.nanoTime() - startNanos) / 1e9;
+            ws_log(String.format("\r\nClients: %d connected, %d failed, %d closed"
+                            + "\r\nMessages: %.0f/s sent, %.0f/s received"
+                            + "\r\nRound trip: %s"
+                            + "\r\nThreads: %d (driver selectors: %d)",
+                    connected.get(), failed.get(), closed.get(),
+                    (sent.get() - startSent) / elapsed, (received.get() - startReceived) / elapsed,
+                    rtt.percentiles(), Thread.activeCount(), threads));
+            if (lastError != null) ws_log("Last client error: " + lastError);
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        for (NioWorker worker : workers) {
+            if (worker != null) {
+                worker.closing = true;
+                worker.selector.wakeup();
+            }
+        }
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException ignore) {
+        }
+        for (NioWorker worker : workers) if (worker != null) worker.shutdown();
+        if (webSocket != null) webSocket.closeAll("Completed");
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Handler decorator: onMessage, onError and onClose of the wrapped handler
+ * run on a shared pool of threads, serially per connection (the order
+ * is kept). The connection thread only queues the WsMessage, so a slow
+ * handler does not hold the library message queue (WsParameters
+ * maxMessages) at once. Up to maxQueued messages wait per connection;
+ * then onMessage blocks the connection thread and the library queue
+ * fills as with the inline handler.
+ * onOpen runs inline, before any message.
+ */
+public class WsOffloadHandler implements WsServer.Handler {
+    final WsConnection.Handler handler;
+    final ExecutorService executor;
+    final int maxQueued;
+    final ConcurrentHashMap<WsConnection, Lane> lanes = new ConcurrentHashMap<>();
+    final AtomicInteger maxDepth = new AtomicInteger();
+
+    // handler: WsConnection.Handler or WsServer.Handler
+    public WsOffloadHandler(WsConnection.Handler handler, int threads, int maxQueued) {
+        this.handler = handler;
+        this.maxQueued = maxQueued;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "WsOffloadHandler-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    class Lane implements Runnable {
+        final WsConnection conn;
+        final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+        final Semaphore permits = new Semaphore(maxQueued);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(WsConnection conn) {
+            this.conn = conn;
+        }
+
+        int depth() {
+            return maxQueued - permits.availablePermits();
+        }
+
+        void offer(Object event) {
+            queue.add(event);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) { // shut down
+                    queue.clear();
+                }
+            }
+        }
+
+        // one event per run: the connections share the pool threads fairly
+        @Override
+        public void run() {
+            Object event = queue.poll();
+            try {
+                if (event instanceof WsMessage) {
+                    permits.release();
+                    handler.onMessage(conn, (WsMessage) event);
+                } else if (event instanceof Throwable) {
+                    handler.onError(conn, (Throwable) event);
+                } else if (event instanceof WsStatus) {
+                    lanes.remove(conn, this);
+                    handler.onClose(conn, (WsStatus) event);
+                }
+            } catch (Throwable e) {
+                e.printStackTrace();
+                conn.close(WsStatus.INTERNAL_ERROR, "Handler crashed");
+            }
+            scheduled.set(false);
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    queue.clear();
+                }
+            }
+        }
+    }
+
+    Lane getLane(WsConnection conn) {
+        Lane lane = lanes.get(conn);
+        if (lane == null) {
+            Lane newLane = new Lane(conn);
+            lane = lanes.putIfAbsent(conn, newLane);
+            if (lane == null) lane = newLane;
+        }
+        return lane;
+    }
+
+    // messages waiting for the handler
+    public int getQueueDepth(WsConnection conn) {
+        Lane lane = lanes.get(conn);
+        return lane == null ? 0 : lane.depth();
+    }
+
+    // the deepest queue seen
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    public int getQueued() {
+        int queued = 0;
+        for (Lane lane : lanes.values()) queued += lane.depth();
+        return queued;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        getLane(conn);
+        handler.onOpen(conn, subProtocol);
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        Lane lane = getLane(conn);
+        try {
+            lane.permits.acquire(); // blocks the connection thread while full
+        } catch (InterruptedException e) {
+            return; // connection closed
+        }
+        int depth = lane.depth();
+        int max;
+        while (depth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, depth)) ;
+        lane.offer(msg);
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        getLane(conn).offer(e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        getLane(conn).offer(status);
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStart(server, wsp);
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        if (handler instanceof WsServer.Handler)
+            ((WsServer.Handler) handler).onStop(server, e);
+    }
+}
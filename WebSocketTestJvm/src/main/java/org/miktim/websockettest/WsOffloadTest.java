@@ -0,0 +1,226 @@
+/*
+ * WebSocket handler offload benchmark. MIT (c) 2025 agent@local
+ *
+ * The server handler is slow (parks work microseconds per message, as
+ * subprotocol "2" of the stress test). The clients send at a fixed rate
+ * per connection: below the handler service rate it is the throughput,
+ * above it the library message queue (maxMessages) overflows and the
+ * server closes the connection (1008). Compares the inline handler with
+ * WsOffloadHandler (shared pool, per-connection serial queues of
+ * maxQueued messages): handled messages/s, overflowed connections,
+ * time to overflow and the deepest offload queue.
+ *
+ * Options (runner: offload:key=value,...):
+ *   modes=inline/offload connections=4 work=1000 (us per message)
+ *   rates=200/2000 (messages/s per connection) duration=5 (s)
+ *   maxMessages=16 (library default 3) maxQueued=1000 threads=4 size=64 nodelay=true
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class WsOffloadTest extends Thread {
+    final TestContext context;
+    final String[] modes;
+    final int connections;
+    final long workNanos;
+    final int[] rates;
+    final int duration;
+    final int maxMessages;
+    final int maxQueued;
+    final int threads;
+    final int messageSize;
+    final boolean tcpNoDelay;
+
+    final AtomicLong handled = new AtomicLong();
+    final List<Long> overflows = Collections.synchronizedList(new ArrayList<Long>());
+    volatile long startNanos;
+    volatile int errors;
+
+    WsOffloadTest(TestContext context, TestOptions options) {
+        this.context = context;
+        modes = options.getStrings("modes", new String[]{"inline", "offload"});
+        connections = options.getInt("connections", 4);
+        workNanos = options.getLong("work", 1000) * 1000;
+        rates = options.getInts("rates", new int[]{200, 2000});
+        duration = options.getInt("duration", 5);
+        maxMessages = options.getInt("maxMessages", 16);
+        maxQueued = options.getInt("maxQueued", 1000);
+        threads = options.getInt("threads", 4);
+        messageSize = options.getInt("size", 64);
+        tcpNoDelay = options.getBoolean("nodelay", true);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    final WsServer.Handler slowHandler = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asByteArray();
+            long deadline = System.nanoTime() + workNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) LockSupport.parkNanos(deadline - now);
+            handled.incrementAndGet();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (status.code == WsStatus.POLICY_VIOLATION) {
+                overflows.add(System.nanoTime() - startNanos);
+            } else if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY
+                    && errors++ < 10) {
+                ws_log("Client closed: " + status);
+            }
+        }
+    };
+
+    class Sender extends Thread {
+        final WsConnection conn;
+        final int rate;
+        final byte[] message = new byte[messageSize];
+        volatile boolean running = true;
+
+        Sender(WsConnection conn, int rate) {
+            this.conn = conn;
+            this.rate = rate;
+        }
+
+        @Override
+        public void run() {
+            long intervalNanos = 1000000000L / Math.max(1, rate);
+            long next = System.nanoTime();
+            while (running && conn.isOpen()) {
+                long now;
+                while ((now = System.nanoTime()) < next) LockSupport.parkNanos(next - now);
+                next += intervalNanos;
+                try {
+                    conn.send(message);
+                } catch (Exception e) {
+                    break; // closed by the server
+                }
+            }
+        }
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs handler offload benchmark"
+                + "\r\nModes: " + Arrays.toString(modes)
+                + " Connections: " + connections
+                + " Handler work: " + workNanos / 1000 + " us/message"
+                + "\r\nRates: " + Arrays.toString(rates) + " messages/s per connection"
+                + " Duration: " + duration + " s"
+                + "\r\nmaxMessages: " + maxMessages + " maxQueued: " + maxQueued
+                + " Offload threads: " + threads + (tcpNoDelay ? " TCP_NODELAY" : "") + "\r\n");
+        StringBuilder table = new StringBuilder(String.format("%-8s %6s %10s %8s %12s %9s",
+                "mode", "rate", "handled/s", "overflow", "overflow ms", "max queue"));
+        for (String mode : modes) {
+            for (int rate : rates) {
+                WebSocket webSocket = null;
+                WsOffloadHandler offload = null;
+                try {
+                    webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                    WsParameters wsp = new WsParameters()
+                            .setConnectionSoTimeout(20000, true)
+                            .setMaxMessages(maxMessages);
+                    WsServer.Handler handler = slowHandler;
+                    if (mode.equals("offload")) {
+                        offload = new WsOffloadHandler(slowHandler, threads, maxQueued);
+                        handler = offload;
+                    }
+                    WsServer server = webSocket.startServer(0, handler, wsp);
+                    server.ready();
+                    List<Sender> senders = new ArrayList<>();
+                    for (int i = 0; i < connections; i++) {
+                        WsConnection conn = webSocket.connect(WsNetProxy.route("ws://localhost:" + server.getPort()),
+                                clientHandler, wsp).ready();
+                        WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay); // no bursts after the Nagle stalls
+                        senders.add(new Sender(conn, rate));
+                    }
+                    handled.set(0);
+                    overflows.clear();
+                    startNanos = System.nanoTime();
+                    for (Sender sender : senders) sender.start();
+                    Thread.sleep(duration * 1000L);
+                    long count = handled.get();
+                    double seconds = (System.nanoTime() - startNanos) / 1e9;
+                    for (Sender sender : senders) sender.running = false;
+                    for (Sender sender : senders) sender.join();
+                    String overflowMillis = "-";
+                    synchronized (overflows) {
+                        if (!overflows.isEmpty()) {
+                            Collections.sort(overflows);
+                            overflowMillis = LatencyHistogram.millis(overflows.get(overflows.size() / 2));
+                        }
+                    }
+                    String line = String.format("%-8s %6d %10.0f %8s %12s %9s",
+                            mode, rate, count / seconds,
+                            overflows.size() + "/" + connections, overflowMillis,
+                            offload != null ? String.valueOf(offload.getMaxQueueDepth()) : "-");
+                    ws_log(line);
+                    table.append("\r\n").append(line);
+                } catch (Throwable e) {
+                    ws_log("Unexpected: " + e);
+                    e.printStackTrace();
+                }
+                if (webSocket != null) webSocket.closeAll("Completed");
+                if (offload != null) offload.shutdown();
+            }
+        }
+        ws_log("\r\n" + table);
+        ws_log("(overflow ms: the median time to the connection overflow)");
+        if (errors > 0) ws_log("Client errors: " + errors);
+        ws_log("\r\nTest completed.");
+    }
+}
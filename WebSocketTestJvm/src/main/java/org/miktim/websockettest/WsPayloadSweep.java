@@ -0,0 +1,238 @@
+/*
+ * WebSocket payloadBufferLength sweep. MIT (c) 2025 agent@local
+ *
+ * Bulk one-way transfer for a grid of payloadBufferLength (the sender
+ * frame size) and message sizes over ws and wss. The server acknowledges
+ * every message, up to 8 messages are in flight. Reports MB/s,
+ * process CPU ms per MB and the allocated bytes per transferred byte.
+ * Recommends per scheme and message size (the workload profile) the
+ * buffer with the least CPU among those within 5% of the best throughput
+ * and writes the recommendations to a WsPayloadTuning file.
+ * Desktop/server JVM only (GcReport).
+ *
+ * Options (runner: sweep:key=value,...):
+ *   schemes=ws/wss buffers=1024/4096/16384/32768/131072
+ *   sizes=256/4096/65536/1048576 bytes=4194304 (per cell)
+ *   out=payload-tuning.properties nodelay=true
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class WsPayloadSweep extends Thread {
+    static final int WINDOW = 8; // messages in flight
+
+    final TestContext context;
+    final String[] schemes;
+    final int[] buffers;
+    final int[] sizes;
+    final long cellBytes;
+    final String outFile;
+    final boolean tcpNoDelay;
+
+    final Semaphore window = new Semaphore(WINDOW);
+
+    WsPayloadSweep(TestContext context, TestOptions options) {
+        this.context = context;
+        schemes = options.getStrings("schemes", new String[]{"ws", "wss"});
+        buffers = options.getInts("buffers", new int[]{1024, 4096, 16384, 32768, 131072});
+        sizes = options.getInts("sizes", new int[]{256, 4096, 65536, 1048576});
+        cellBytes = options.getLong("bytes", 4194304);
+        outFile = options.getString("out", "payload-tuning.properties");
+        tcpNoDelay = options.getBoolean("nodelay", true);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // consumes the message, acknowledges it
+    final WsServer.Handler sink = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asByteArray();
+            if (conn.isOpen()) conn.send("ack");
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Server side onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    final WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asString();
+            window.release();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY)
+                ws_log("Client closed: " + status);
+            window.release(WINDOW); // do not wait for the lost acks
+        }
+    };
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs payloadBufferLength sweep"
+                + "\r\nSchemes: " + Arrays.toString(schemes)
+                + " Buffers: " + Arrays.toString(buffers)
+                + "\r\nMessage sizes: " + Arrays.toString(sizes)
+                + " Bytes per cell: " + cellBytes
+                + (tcpNoDelay ? " TCP_NODELAY" : "") + "\r\n");
+        int maxSize = 125;
+        for (int size : sizes) maxSize = Math.max(maxSize, size);
+        StringBuilder table = new StringBuilder(String.format("%-4s %8s %7s %8s %9s %8s",
+                "", "size", "buffer", "MB/s", "CPU ms/MB", "alloc/B"));
+        StringBuilder advice = new StringBuilder();
+        WsPayloadTuning tuning = new WsPayloadTuning();
+        for (String scheme : schemes) {
+            WebSocket webSocket = null;
+            try {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                if (scheme.equals("wss"))
+                    webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+                WsParameters serverWsp = new WsParameters()
+                        .setMaxMessageLength(maxSize)
+                        .setMaxMessages(WINDOW * 2)
+                        .setConnectionSoTimeout(30000, true);
+                WsServer server = scheme.equals("wss")
+                        ? webSocket.startSecureServer(0, sink, serverWsp)
+                        : webSocket.startServer(0, sink, serverWsp);
+                server.ready();
+                for (int size : sizes) {
+                    byte[] payload = WsLoadTest.payload(size);
+                    int messages = (int) Math.max(50, Math.min(20000, cellBytes / size));
+                    int bestBuffer = -1;
+                    double bestRate = 0;
+                    double[] rates = new double[buffers.length];
+                    double[] cpus = new double[buffers.length];
+                    for (int b = 0; b < buffers.length; b++) {
+                        WsParameters wsp = new WsParameters()
+                                .setMaxMessageLength(maxSize)
+                                .setPayloadBufferLength(buffers[b])
+                                .setMaxMessages(WINDOW * 2) // the acks
+                                .setConnectionSoTimeout(30000, true);
+                        WsConnection conn = webSocket.connect(WsNetProxy.route(scheme + "://localhost:"
+                                + server.getPort()), clientHandler, wsp).ready();
+                        window.drainPermits();
+                        window.release(WINDOW);
+                        try {
+                            for (int i = 0; i < 10 && conn.isOpen(); i++) { // warm up
+                                window.acquire();
+                                conn.send(payload);
+                            }
+                        } catch (Exception e) {
+                            // failed, see the connection status
+                        }
+                        window.tryAcquire(WINDOW, 60, TimeUnit.SECONDS);
+                        window.drainPermits();
+                        window.release(WINDOW);
+                        System.gc();
+                        GcReport gc = new GcReport().start();
+                        long startCpu = GcReport.getProcessCpuNanos();
+                        long startNanos = System.nanoTime();
+                        int i = 0;
+                        try {
+                            for (; i < messages && conn.isOpen(); i++) {
+                                window.acquire();
+                                conn.send(payload);
+                            }
+                        } catch (Exception e) {
+                            // failed, see the connection status
+                        }
+                        boolean completed = window.tryAcquire(WINDOW, 60, TimeUnit.SECONDS)
+                                && i == messages && conn.isOpen();
+                        double seconds = (System.nanoTime() - startNanos) / 1e9;
+                        long cpu = GcReport.getProcessCpuNanos() - startCpu;
+                        long allocated = gc.getAllocatedBytes();
+                        double megabytes = (double) messages * size / 1e6;
+                        String line;
+                        if (!completed) {
+                            line = String.format("%-4s %8d %7d failed: %s",
+                                    scheme, size, buffers[b], conn.getStatus());
+                        } else {
+                            rates[b] = megabytes / seconds;
+                            cpus[b] = startCpu < 0 ? 0 : cpu / 1e6 / megabytes;
+                            line = String.format("%-4s %8d %7d %8.2f %9s %8s",
+                                    scheme, size, buffers[b], rates[b],
+                                    startCpu < 0 ? "n/a" : String.format("%.1f", cpus[b]),
+                                    allocated < 0 ? "n/a"
+                                            : String.format("%.2f", allocated / (megabytes * 1e6)));
+                        }
+                        ws_log(line);
+                        table.append("\r\n").append(line);
+                        conn.close("Completed");
+                        conn.join();
+                        bestRate = Math.max(bestRate, rates[b]);
+                    }
+                    for (int b = 0; b < buffers.length; b++) { // least CPU within 5% of the best
+                        if (rates[b] >= bestRate * 0.95
+                                && (bestBuffer < 0 || cpus[b] < cpus[bestBuffer])) bestBuffer = b;
+                    }
+                    if (bestBuffer >= 0 && bestRate > 0) {
+                        tuning.set(scheme, size, buffers[bestBuffer]);
+                        advice.append(String.format("\r\n%s messages up to %d bytes: payloadBufferLength %d",
+                                scheme, size, buffers[bestBuffer]));
+                    }
+                }
+            } catch (Throwable e) {
+                ws_log("Unexpected: " + e);
+                e.printStackTrace();
+            }
+            if (webSocket != null) webSocket.closeAll("Completed");
+        }
+        ws_log("\r\n" + table);
+        ws_log("\r\nRecommendation:" + advice);
+        try {
+            tuning.store(outFile, "WsPayloadSweep " + new Date()
+                    + "\r\n<scheme>.<message size>=<payloadBufferLength>, see WsPayloadTuning");
+            ws_log("Written to: " + outFile);
+        } catch (Exception e) {
+            ws_log("Recommendation write error: " + e);
+        }
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsParameters;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/*
+ * payloadBufferLength recommendations per workload profile
+ * (the WsPayloadSweep output), properties file lines:
+ *   <scheme>.<message size>=<payloadBufferLength>
+ * The profile of a message is the smallest profile size not less than
+ * the message size, the largest profile for the larger messages:
+ *   WsParameters wsp = WsPayloadTuning.load("payload-tuning.properties")
+ *           .apply(new WsParameters(), "wss", 4096);
+ */
+public class WsPayloadTuning {
+    final Properties properties = new Properties();
+
+    public static WsPayloadTuning load(String fileName) throws IOException {
+        try (InputStream is = new FileInputStream(fileName)) {
+            return load(is);
+        }
+    }
+
+    public static WsPayloadTuning load(InputStream is) throws IOException {
+        WsPayloadTuning tuning = new WsPayloadTuning();
+        tuning.properties.load(is);
+        return tuning;
+    }
+
+    public void set(String scheme, int messageSize, int payloadBufferLength) {
+        properties.setProperty(scheme + "." + messageSize, String.valueOf(payloadBufferLength));
+    }
+
+    public void store(String fileName, String comments) throws IOException {
+        try (OutputStream os = new FileOutputStream(fileName)) {
+            properties.store(os, comments);
+        }
+    }
+
+    // -1: no profile for the scheme
+    public int getPayloadBufferLength(String scheme, int messageSize) {
+        int profile = -1;
+        int largest = -1;
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(scheme + ".")) continue;
+            int size;
+            try {
+                size = Integer.parseInt(key.substring(scheme.length() + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (size >= messageSize && (profile < 0 || size < profile)) profile = size;
+            largest = Math.max(largest, size);
+        }
+        if (profile < 0) profile = largest;
+        if (profile < 0) return -1;
+        return Integer.parseInt(properties.getProperty(scheme + "." + profile).trim());
+    }
+
+    // unchanged wsp if there is no profile
+    public WsParameters apply(WsParameters wsp, String scheme, int messageSize) {
+        int length = getPayloadBufferLength(scheme, messageSize);
+        if (length > 0) wsp.setPayloadBufferLength(length);
+        return wsp;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Reference topic based publish/subscribe hub.
+ * Commands (text): "subscribe,<topic>", "unsubscribe,<topic>",
+ * "publish,<topic>,<data>". The subscribers receive "message,<topic>,<data>".
+ * Subscriber lists are copy-on-write arrays in a ConcurrentHashMap
+ * (locks per bin): subscribe/unsubscribe replace the array with CAS,
+ * publishers read the current array without locking.
+ * The delivery runs in the publisher connection thread or,
+ * with a WsBroadcaster, in its pool.
+ */
+public class WsPubSubHub implements WsServer.Handler {
+    final TestContext context;
+    final WsBroadcaster broadcaster; // null: send in the publisher thread
+    final ConcurrentHashMap<String, WsConnection[]> topics =
+            new ConcurrentHashMap<>(1024, 0.75f, 64);
+    // topics of the connection, to unsubscribe on close
+    final ConcurrentHashMap<WsConnection, Set<String>> subscriptions =
+            new ConcurrentHashMap<>();
+    final AtomicLong published = new AtomicLong();
+    final AtomicLong delivered = new AtomicLong();
+
+    public WsPubSubHub(TestContext context, WsBroadcaster broadcaster) {
+        this.context = context;
+        this.broadcaster = broadcaster;
+    }
+
+    static int indexOf(WsConnection[] connections, WsConnection conn) {
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] == conn) return i;
+        }
+        return -1;
+    }
+
+    Set<String> topicsOf(WsConnection conn) {
+        Set<String> set = subscriptions.get(conn);
+        if (set == null) {
+            Set<String> newSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            set = subscriptions.putIfAbsent(conn, newSet);
+            if (set == null) set = newSet;
+        }
+        return set;
+    }
+
+    public boolean subscribe(WsConnection conn, String topic) {
+        while (true) {
+            WsConnection[] old = topics.get(topic);
+            if (old == null) {
+                if (topics.putIfAbsent(topic, new WsConnection[]{conn}) == null) break;
+                continue;
+            }
+            if (indexOf(old, conn) >= 0) return false;
+            WsConnection[] updated = Arrays.copyOf(old, old.length + 1);
+            updated[old.length] = conn;
+            if (topics.replace(topic, old, updated)) break;
+        }
+        topicsOf(conn).add(topic);
+        return true;
+    }
+
+    public boolean unsubscribe(WsConnection conn, String topic) {
+        while (true) {
+            WsConnection[] old = topics.get(topic);
+            int i = old == null ? -1 : indexOf(old, conn);
+            if (i < 0) return false;
+            if (old.length == 1) {
+                if (topics.remove(topic, old)) break;
+                continue;
+            }
+            WsConnection[] updated = new WsConnection[old.length - 1];
+            System.arraycopy(old, 0, updated, 0, i);
+            System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+            if (topics.replace(topic, old, updated)) break;
+        }
+        Set<String> set = subscriptions.get(conn);
+        if (set != null) set.remove(topic);
+        return true;
+    }
+
+    // returns the number of the sends issued (the open subscribers)
+    public int publish(String topic, String data) {
+        WsConnection[] subscribers = topics.get(topic);
+        published.incrementAndGet();
+        if (subscribers == null) return 0;
+        byte[] payload;
+        try {
+            payload = ("message," + topic + "," + data).getBytes("UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+        int issued = 0;
+        if (broadcaster != null) {
+            WsConnection[] open = new WsConnection[subscribers.length];
+            for (WsConnection conn : subscribers) {
+                if (conn.isOpen()) open[issued++] = conn;
+            }
+            broadcaster.broadcast(issued == open.length ? open : Arrays.copyOf(open, issued),
+                    payload, true);
+        } else {
+            for (WsConnection conn : subscribers) {
+                try {
+                    if (conn.isOpen()) {
+                        conn.send(new ByteArrayInputStream(payload), true);
+                        issued++;
+                    }
+                } catch (Exception ignore) {
+                }
+            }
+        }
+        delivered.addAndGet(issued);
+        return issued;
+    }
+
+    public int getTopicCount() {
+        return topics.size();
+    }
+
+    public long getSubscriptionCount() {
+        long count = 0;
+        for (WsConnection[] subscribers : topics.values()) count += subscribers.length;
+        return count;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    // messages passed to the subscribers (or to the broadcaster)
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        if (!msg.isText()) {
+            conn.close(WsStatus.UNSUPPORTED_DATA, "Text commands expected");
+            return;
+        }
+        String[] sa = msg.asString().split(",", 3);
+        if (sa.length < 2) return;
+        switch (sa[0]) {
+            case ("subscribe"):
+                subscribe(conn, sa[1]);
+                break;
+            case ("unsubscribe"):
+                unsubscribe(conn, sa[1]);
+                break;
+            case ("publish"):
+                publish(sa[1], sa.length > 2 ? sa[2] : "");
+                break;
+            default:
+                context.log("PubSub hub: unknown command. Ignored.");
+        }
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        context.log("PubSub hub onError: " + e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        Set<String> set = subscriptions.remove(conn);
+        if (set == null) return;
+        for (String topic : set) unsubscribe(conn, topic);
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        if (e != null) context.log("PubSub hub abnormal shutdown: " + e);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * WebSocket pub/sub hub load test. MIT (c) 2025 agent@local
+ *
+ * Many topics with Zipf-skewed popularity (skew=0: uniform):
+ * the subscribers subscribe to the topics, the publishers publish
+ * at a fixed aggregate rate, and the churn thread moves random
+ * subscriptions to other topics. The messages carry the publish
+ * System.nanoTime(): reports the delivery throughput and the
+ * publish-to-delivery latency each second and in total.
+ *
+ * Options (runner: pubsub:key=value,...):
+ *   topics=1000 subscribers=200 subscriptions=20 (per subscriber) skew=1.0
+ *   publishers=4 rate=200 (publishes/s) churn=50 (changes/s) size=64
+ *   duration=10 (s) threads=4 (WsBroadcaster, 0: publisher thread sends)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class WsPubSubTest extends Thread {
+    final TestContext context;
+    final int topics;
+    final int subscribers;
+    final int subscriptions;
+    final double skew;
+    final int publishers;
+    final int rate;
+    final int churn;
+    final int messageSize;
+    final int duration;
+    final int threads;
+
+    double[] cumulative; // Zipf distribution of the topic popularity
+    String padding;
+    volatile boolean running = true;
+    final AtomicLong received = new AtomicLong();
+    final AtomicLong publishedCount = new AtomicLong();
+    final AtomicLong churned = new AtomicLong();
+    final LatencyHistogram latency = new LatencyHistogram();
+    final AtomicLong errors = new AtomicLong();
+
+    WsPubSubTest(TestContext context, TestOptions options) {
+        this.context = context;
+        topics = options.getInt("topics", 1000);
+        subscribers = options.getInt("subscribers", 200);
+        subscriptions = Math.min(options.getInt("subscriptions", 20), topics);
+        skew = Double.parseDouble(options.getString("skew", "1.0"));
+        publishers = options.getInt("publishers", 4);
+        rate = options.getInt("rate", 200);
+        churn = options.getInt("churn", 50);
+        messageSize = options.getInt("size", 64);
+        duration = options.getInt("duration", 10);
+        threads = options.getInt("threads", 4);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    String sampleTopic(Random random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (i < 0) i = -i - 1;
+        return "t" + Math.min(i, topics - 1);
+    }
+
+    // a topic not in the list (the list is shorter than topics)
+    String sampleTopic(Random random, List<String> list) {
+        for (int tries = 0; tries < 100; tries++) {
+            String topic = sampleTopic(random);
+            if (!list.contains(topic)) return topic;
+        }
+        for (int k = 0; ; k++) { // the skew tail is rarely sampled
+            if (!list.contains("t" + k)) return "t" + k;
+        }
+    }
+
+    WsConnection.Handler subscriberHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            long now = System.nanoTime();
+            String[] sa = msg.asString().split(",", 4); // message,topic,stamp,padding
+            if (sa.length < 3 || !sa[0].equals("message")) return;
+            latency.record(now - Long.parseLong(sa[2]));
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            if (errors.incrementAndGet() <= 10) ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY
+                    && errors.incrementAndGet() <= 10) ws_log("Client closed: " + status);
+        }
+    };
+
+    class Publisher extends Thread {
+        final WsConnection conn;
+        final Random random = new Random();
+
+        Publisher(WsConnection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public void run() {
+            long intervalNanos = 1000000000L * publishers / Math.max(1, rate);
+            long next = System.nanoTime();
+            while (running && conn.isOpen()) {
+                long now;
+                while ((now = System.nanoTime()) < next) LockSupport.parkNanos(next - now);
+                next += intervalNanos;
+                try {
+                    conn.send("publish," + sampleTopic(random) + "," + System.nanoTime() + "," + padding);
+                    publishedCount.incrementAndGet();
+                } catch (Exception e) {
+                    if (errors.incrementAndGet() <= 10) ws_log("Publisher send error: " + e);
+                    break;
+                }
+            }
+        }
+    }
+
+    // moves a random subscription of a random subscriber to another topic
+    class Churn extends Thread {
+        final List<WsConnection> connections;
+        final List<List<String>> topicsOf;
+        final Random random = new Random();
+
+        Churn(List<WsConnection> connections, List<List<String>> topicsOf) {
+            this.connections = connections;
+            this.topicsOf = topicsOf;
+        }
+
+        @Override
+        public void run() {
+            if (churn <= 0) return;
+            long intervalNanos = 1000000000L / churn;
+            long next = System.nanoTime();
+            while (running) {
+                long now;
+                while ((now = System.nanoTime()) < next) LockSupport.parkNanos(next - now);
+                next += intervalNanos;
+                int i = random.nextInt(connections.size());
+                List<String> list = topicsOf.get(i);
+                if (list.isEmpty()) continue;
+                int j = random.nextInt(list.size());
+                String topic = sampleTopic(random);
+                if (list.contains(topic)) continue; // the hub keeps a set
+                try {
+                    connections.get(i).send("unsubscribe," + list.get(j));
+                    connections.get(i).send("subscribe," + topic);
+                    list.set(j, topic);
+                    churned.incrementAndGet();
+                } catch (Exception e) {
+                    if (errors.incrementAndGet() <= 10) ws_log("Churn send error: " + e);
+                }
+            }
+        }
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs pub/sub hub load test"
+                + "\r\nTopics: " + topics + " skew: " + skew
+                + " Subscribers: " + subscribers + " x " + subscriptions + " subscriptions"
+                + "\r\nPublishers: " + publishers + " Rate: " + rate + " publishes/s"
+                + " Churn: " + churn + " changes/s Message size: " + messageSize
+                + "\r\nDelivery: " + (threads > 0 ? "WsBroadcaster " + threads + " threads" : "publisher thread")
+                + " Duration: " + duration + " s\r\n");
+        cumulative = new double[topics];
+        double sum = 0;
+        for (int k = 0; k < topics; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < topics; k++) cumulative[k] /= sum;
+        char[] ca = new char[Math.max(0, messageSize - 40)];
+        Arrays.fill(ca, 'x');
+        padding = new String(ca);
+
+        WebSocket webSocket = null;
+        WsBroadcaster broadcaster = threads > 0 ? new WsBroadcaster(threads, 1024) : null;
+        List<Thread> workers = new ArrayList<>();
+        try {
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            WsParameters wsp = new WsParameters()
+                    .setHandshakeSoTimeout(20000)
+                    .setConnectionSoTimeout(20000, true)
+                    .setMaxMessages(1000);
+            WsPubSubHub hub = new WsPubSubHub(context, broadcaster);
+            WsServer server = webSocket.startServer(0, hub, wsp);
+            server.ready();
+            String address = WsNetProxy.route("ws://localhost:" + server.getPort());
+
+            Random random = new Random();
+            List<WsConnection> connections = new ArrayList<>();
+            List<List<String>> topicsOf = new ArrayList<>();
+            for (int i = 0; i < subscribers; i++) {
+                WsConnection conn = webSocket.connect(address, subscriberHandler, wsp).ready();
+                List<String> list = new ArrayList<>();
+                for (int j = 0; j < subscriptions; j++) {
+                    String topic = sampleTopic(random, list); // without replacement
+                    conn.send("subscribe," + topic);
+                    list.add(topic);
+                }
+                connections.add(conn);
+                topicsOf.add(list);
+            }
+            Thread.sleep(500); // the subscriptions are asynchronous
+            ws_log(String.format("Hub: %d topics, %d subscriptions",
+                    hub.getTopicCount(), hub.getSubscriptionCount()));
+
+            for (int i = 0; i < publishers; i++) {
+                workers.add(new Publisher(webSocket.connect(address, subscriberHandler, wsp).ready()));
+            }
+            workers.add(new Churn(connections, topicsOf));
+            long startNanos = System.nanoTime();
+            for (Thread worker : workers) worker.start();
+            long lastPublished = 0;
+            long lastReceived = 0;
+            for (int s = 1; s <= duration; s++) {
+                Thread.sleep(Math.max(0, startNanos / 1000000 + s * 1000L - System.nanoTime() / 1000000));
+                long published = publishedCount.get();
+                long delivered = received.get();
+                ws_log(String.format("%4ds published %6d/s delivered %8d/s fan-out %5.1f %s",
+                        s, published - lastPublished, delivered - lastReceived,
+                        (double) (delivered - lastReceived) / Math.max(1, published - lastPublished),
+                        latency.percentiles()));
+                lastPublished = published;
+                lastReceived = delivered;
+            }
+            running = false;
+            for (Thread worker : workers) worker.join();
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            Thread.sleep(500); // the last deliveries
+            ws_log(String.format("\r\nPublished: %d (%.0f/s) Hub fan-out: %d"
+                            + "\r\nDelivered: %d (%.0f/s) Subscription changes: %d"
+                            + "\r\nLatency: %s"
+                            + "\r\nHub: %d topics, %d subscriptions",
+                    publishedCount.get(), publishedCount.get() / seconds, hub.getDelivered(),
+                    received.get(), received.get() / seconds, churned.get(),
+                    latency.percentiles(),
+                    hub.getTopicCount(), hub.getSubscriptionCount()));
+            if (broadcaster != null) {
+                ws_log(String.format("WsBroadcaster: dropped %d slow consumers %d",
+                        broadcaster.getDropped(), broadcaster.getSlowConsumers()));
+            }
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        running = false;
+        if (broadcaster != null) broadcaster.shutdown();
+        if (webSocket != null) webSocket.closeAll("Completed");
+        if (errors.get() > 0) ws_log("Client errors: " + errors.get());
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * WebSocket open-loop constant rate test. MIT (c) 2025 agent@local
+ *
+ * The clients send "echo," commands (WsTestService) on a fixed-rate timeline,
+ * independent of the responses. The echo latency is measured against
+ * the intended send time (coordinated omission corrected): a stalled send
+ * or server does not hide the waiting messages.
+ * For each rate step reports p50/p99/p99.9/max of the corrected latency
+ * and of the service time (measured from the actual send).
+ *
+ * Options (runner: rate:key=value,...):
+ *   rates=1000/2000/5000/10000/20000 (aggregate msgs/s) connections=4
+ *   duration=5 (seconds per step) size=64 (bytes) scheme=ws nodelay=false
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class WsRateTest extends Thread {
+    final TestContext context;
+    final int[] rates;
+    final int connections;
+    final int duration;
+    final int messageSize;
+    final String scheme;
+    final boolean tcpNoDelay;
+
+    final LatencyHistogram latency = new LatencyHistogram();
+    final LatencyHistogram serviceTime = new LatencyHistogram();
+    final AtomicLong received = new AtomicLong();
+    String padding;
+
+    WsRateTest(TestContext context, TestOptions options) {
+        this.context = context;
+        rates = options.getInts("rates", new int[]{1000, 2000, 5000, 10000, 20000});
+        connections = options.getInt("connections", 4);
+        duration = options.getInt("duration", 5);
+        messageSize = options.getInt("size", 64);
+        scheme = options.getString("scheme", "ws");
+        tcpNoDelay = options.getBoolean("nodelay", false);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    /*
+     * Sends "echo,<step>,<seq>,<padding>" at the fixed interval.
+     * intended[seq] and sent[seq] are the intended and the actual send times.
+     */
+    class RateClient implements Runnable, WsConnection.Handler {
+        WsConnection conn;
+        volatile int step = -1;
+        long[] intended;
+        long[] sent;
+        long intervalNanos;
+        long startNanos;
+        volatile int count; // messages sent in this step
+
+        // the listener drops the echoes until the next prepare()
+        void pause() {
+            step = -1;
+        }
+
+        void prepare(int step, int rate, long startNanos) {
+            pause();
+            int messages = (int) ((long) rate * duration);
+            intended = new long[messages];
+            sent = new long[messages];
+            intervalNanos = 1000000000L / rate;
+            this.startNanos = startNanos;
+            count = 0;
+            this.step = step; // volatile, publishes the arrays to the listener
+        }
+
+        @Override
+        public void run() {
+            StringBuilder sb = new StringBuilder(messageSize + 16);
+            for (int seq = 0; seq < intended.length && conn.isOpen(); seq++) {
+                long intendedNanos = startNanos + seq * intervalNanos;
+                long now;
+                while ((now = System.nanoTime()) < intendedNanos) {
+                    LockSupport.parkNanos(intendedNanos - now);
+                }
+                intended[seq] = intendedNanos;
+                sent[seq] = now;
+                count = seq + 1;
+                sb.setLength(0);
+                sb.append("echo,").append(step).append(',').append(seq)
+                        .append(',').append(padding);
+                try {
+                    conn.send(sb.toString());
+                } catch (Exception e) {
+                    ws_log("Client send error: " + e);
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            long now = System.nanoTime();
+            String[] sa = msg.asString().split(",", 4);
+            if (!sa[0].equals("echo")) return; // "connected,"
+            int current = step;
+            long[] intended = this.intended;
+            long[] sent = this.sent;
+            // late echo of the previous step, or the arrays are being replaced
+            if (current < 0 || Integer.parseInt(sa[1]) != current || step != current) return;
+            int seq = Integer.parseInt(sa[2]);
+            if (seq < 0 || seq >= intended.length || seq >= sent.length) return;
+            latency.record(now - intended[seq]);
+            serviceTime.record(now - sent[seq]);
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY)
+                ws_log("Client closed: " + status);
+        }
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs open-loop rate test"
+                + "\r\nRates (msgs/s): " + Arrays.toString(rates)
+                + "\r\nConnections: " + connections
+                + " Step duration: " + duration + " s"
+                + " Message size: " + messageSize
+                + " Scheme: " + scheme + (tcpNoDelay ? " TCP_NODELAY" : "")
+                + "\r\nLatency is measured from the intended send time\r\n");
+        WebSocket webSocket = null;
+        try {
+            char[] ca = new char[Math.max(0, messageSize - 16)];
+            Arrays.fill(ca, 'x');
+            padding = new String(ca);
+
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            if (scheme.equals("wss"))
+                webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            WsParameters wsp = new WsParameters()
+                    .setHandshakeSoTimeout(10000)
+                    .setConnectionSoTimeout(10000, true)
+                    .setMaxMessages(1000); // queued messages per connection
+            WsConnection.Handler service = new WsTestService(context).setVerbose(false);
+            WsServer server = scheme.equals("wss")
+                    ? webSocket.startSecureServer(0, service, wsp)
+                    : webSocket.startServer(0, service, wsp);
+            server.ready();
+            String address = WsNetProxy.route(scheme + "://localhost:" + server.getPort());
+            List<RateClient> clients = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                RateClient client = new RateClient();
+                client.conn = webSocket.connect(address, client, wsp).ready();
+                clients.add(client);
+            }
+
+            List<String> summary = new ArrayList<>();
+            summary.add(String.format("%8s %9s %9s %9s %9s %9s %9s %7s",
+                    "rate", "sent/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99", "lost"));
+            for (int step = 0; step < rates.length; step++) {
+                int rate = rates[step];
+                for (RateClient client : clients) client.pause();
+                latency.reset();
+                serviceTime.reset();
+                received.set(0);
+                long startNanos = System.nanoTime() + 100000000L; // +100ms
+                for (RateClient client : clients) {
+                    client.prepare(step, Math.max(1, rate / connections), startNanos);
+                    new Thread(client, "RateClient").start();
+                }
+                long sent = 0;
+                for (RateClient client : clients) {
+                    while (client.count < client.intended.length && client.conn.isOpen()) {
+                        Thread.sleep(10);
+                    }
+                    sent += client.count;
+                }
+                double sentRate = sent / ((System.nanoTime() - startNanos) / 1e9);
+                long deadline = System.currentTimeMillis() + 2000; // drain the echoes
+                while (received.get() < sent && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                String line = String.format("%8d %9.0f %9s %9s %9s %9s %9s %7d",
+                        rate, sentRate,
+                        LatencyHistogram.millis(latency.getValueAtPercentile(50)),
+                        LatencyHistogram.millis(latency.getValueAtPercentile(99)),
+                        LatencyHistogram.millis(latency.getValueAtPercentile(99.9)),
+                        LatencyHistogram.millis(latency.getMaxValue()),
+                        LatencyHistogram.millis(serviceTime.getValueAtPercentile(99)),
+                        sent - received.get());
+                summary.add(line);
+                ws_log(String.format("Rate %d msgs/s: %s", rate, latency.percentiles()));
+            }
+            webSocket.closeAll("Completed");
+            ws_log("");
+            for (String line : summary) ws_log(line);
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+            if (webSocket != null) webSocket.closeAll("Unexpected");
+        }
+        ws_log("\r\nTest completed.");
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Pipelined request/response over a single WsConnection.
+ * Request: "req,<id>,<method>,<params>", response: "res,<id>,<result>"
+ * or "err,<id>,<message>" (WsRpcService). Up to window requests are
+ * outstanding, call() blocks while the window is full. The responses
+ * are matched by the correlation id and may arrive out of order.
+ * Use as the client connection handler:
+ *   WsRpcClient rpc = new WsRpcClient(16);
+ *   webSocket.connect(uri, rpc, wsp).ready();
+ *   String result = rpc.call("echo", "text").get(5000);
+ */
+public class WsRpcClient implements WsConnection.Handler {
+    public interface Callback {
+        void onResult(Call call, String result);
+
+        void onError(Call call, Throwable e);
+    }
+
+    public class Call {
+        final long id;
+        final Callback callback;
+        final CountDownLatch done = new CountDownLatch(1);
+        final long startNanos = System.nanoTime();
+        long endNanos;
+        String result;
+        Throwable error;
+
+        Call(long id, Callback callback) {
+            this.id = id;
+            this.callback = callback;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        // request to response, nanoseconds
+        public long getLatency() {
+            return endNanos - startNanos;
+        }
+
+        void complete(String result, Throwable error) {
+            if (pending.remove(id) == null) return; // already completed
+            endNanos = System.nanoTime();
+            this.result = result;
+            this.error = error;
+            window.release();
+            done.countDown();
+            if (callback != null) {
+                if (error == null) callback.onResult(this, result);
+                else callback.onError(this, error);
+            }
+        }
+
+        public String get(long timeoutMillis) throws Exception {
+            if (!done.await(timeoutMillis, TimeUnit.MILLISECONDS))
+                throw new TimeoutException("RPC call " + id + " timeout");
+            if (error != null) throw new IOException(error.getMessage(), error);
+            return result;
+        }
+    }
+
+    final Semaphore window;
+    final ConcurrentHashMap<Long, Call> pending = new ConcurrentHashMap<>();
+    final AtomicLong nextId = new AtomicLong();
+    final AtomicLong reordered = new AtomicLong();
+    long lastId = -1; // listener thread only
+    volatile WsConnection conn;
+    final CountDownLatch opened = new CountDownLatch(1);
+
+    public WsRpcClient(int window) {
+        this.window = new Semaphore(window);
+    }
+
+    public Call call(String method, String params) throws InterruptedException, IOException {
+        return call(method, params, null);
+    }
+
+    // blocks while the window is full
+    public Call call(String method, String params, Callback callback)
+            throws InterruptedException, IOException {
+        opened.await(); // onOpen may follow WsConnection.ready()
+        WsConnection conn = this.conn;
+        if (conn == null || !conn.isOpen()) throw new IOException("Connection is not open");
+        window.acquire();
+        Call call = new Call(nextId.getAndIncrement(), callback);
+        pending.put(call.id, call);
+        try {
+            conn.send("req," + call.id + "," + method + "," + params);
+        } catch (Throwable e) {
+            call.complete(null, e);
+        }
+        return call;
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    // responses received before a response to an earlier request
+    public long getReordered() {
+        return reordered.get();
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        this.conn = conn;
+        opened.countDown();
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        String[] sa = msg.asString().split(",", 3);
+        if (sa.length < 2) return;
+        long id;
+        try {
+            id = Long.parseLong(sa[1]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (id < lastId) reordered.incrementAndGet();
+        lastId = Math.max(lastId, id);
+        Call call = pending.get(id);
+        if (call == null) return;
+        String data = sa.length > 2 ? sa[2] : "";
+        if (sa[0].equals("res")) call.complete(data, null);
+        else call.complete(null, new IOException(data));
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+        IOException e = new IOException("Connection closed: " + status);
+        for (Call call : pending.values()) call.complete(null, e);
+        opened.countDown();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Server side of WsRpcClient: "req,<id>,<method>,<params>" requests
+ * are executed by a pool of threads, the responses "res,<id>,<result>"
+ * (or "err,<id>,<message>") are sent in the completion order.
+ * Methods (WsTestService commands): version, echo, ping (params: delay millis),
+ * time.
+ */
+public class WsRpcService implements WsServer.Handler {
+    final TestContext context;
+    final ExecutorService executor;
+
+    public WsRpcService(TestContext context, int threads) {
+        this.context = context;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "WsRpcService-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    String execute(String method, String params) throws Exception {
+        switch (method) {
+            case ("version"):
+                return "hybi-draft-13";
+            case ("echo"):
+                return params;
+            case ("ping"):
+                if (!params.isEmpty()) Thread.sleep(Integer.parseInt(params));
+                return "success";
+            case ("time"):
+                return new SimpleDateFormat("yyyy/MM/dd hh:mm:ss").format(new Date());
+            default:
+                throw new Exception("Unknown method: " + method);
+        }
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+    }
+
+    @Override
+    public void onMessage(final WsConnection conn, WsMessage msg) {
+        final String[] sa = msg.asString().split(",", 4);
+        if (sa.length < 3 || !sa[0].equals("req")) {
+            conn.close(WsStatus.POLICY_VIOLATION, "RPC request expected");
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    String response;
+                    try {
+                        response = "res," + sa[1] + "," + execute(sa[2], sa.length > 3 ? sa[3] : "");
+                    } catch (Exception e) {
+                        response = "err," + sa[1] + "," + e.getMessage();
+                    }
+                    try {
+                        if (conn.isOpen()) conn.send(response);
+                    } catch (Exception e) {
+                        context.log("RPC service send error: " + e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            conn.close(WsStatus.GOING_AWAY, "Service stopped");
+        }
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        context.log("RPC service onError: " + e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus status) {
+    }
+
+    @Override
+    public void onStart(WsServer server, WsParameters wsp) {
+    }
+
+    @Override
+    public void onStop(WsServer server, Throwable e) {
+        executor.shutdownNow();
+        if (e != null) context.log("RPC service abnormal shutdown: " + e);
+    }
+}
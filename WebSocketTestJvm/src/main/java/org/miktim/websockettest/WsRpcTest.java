@@ -0,0 +1,132 @@
+/*
+ * WebSocket pipelined RPC benchmark. MIT (c) 2025 agent@local
+ *
+ * Requests/s of the lock-step protocol (window=1: one request in flight,
+ * as WsWssClientServerTest) versus pipelined requests (WsRpcClient,
+ * WsRpcService) over a single ws/wss connection.
+ * The "ping" method with delay > 0 holds the server thread: the responses
+ * complete out of order (the reordered column).
+ *
+ * Options (runner: rpc:key=value,...):
+ *   schemes=ws/wss windows=1/4/16/64 requests=20000 size=64
+ *   delay=0 (ms, 0: echo requests) threads=4 (server) nodelay=true
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsRpcTest extends Thread {
+    final TestContext context;
+    final String[] schemes;
+    final int[] windows;
+    final int requests;
+    final int messageSize;
+    final int delay;
+    final int threads;
+    final boolean tcpNoDelay;
+
+    WsRpcTest(TestContext context, TestOptions options) {
+        this.context = context;
+        schemes = options.getStrings("schemes", new String[]{"ws", "wss"});
+        windows = options.getInts("windows", new int[]{1, 4, 16, 64});
+        requests = options.getInt("requests", 20000);
+        messageSize = options.getInt("size", 64);
+        delay = options.getInt("delay", 0);
+        threads = options.getInt("threads", 4);
+        tcpNoDelay = options.getBoolean("nodelay", true);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs pipelined RPC benchmark"
+                + "\r\nSchemes: " + Arrays.toString(schemes)
+                + " Windows: " + Arrays.toString(windows)
+                + "\r\nRequests per cell: " + requests
+                + (delay > 0 ? " ping, server delay " + delay + " ms" : " echo, " + messageSize + " bytes")
+                + " Server threads: " + threads + (tcpNoDelay ? " TCP_NODELAY" : "") + "\r\n");
+        char[] ca = new char[messageSize];
+        Arrays.fill(ca, 'x');
+        final String params = delay > 0 ? String.valueOf(delay) : new String(ca);
+        final String method = delay > 0 ? "ping" : "echo";
+        StringBuilder table = new StringBuilder(String.format("%-4s %6s %10s %9s %9s %9s %9s",
+                "", "window", "req/s", "p50 ms", "p99 ms", "reordered", "errors"));
+        for (String scheme : schemes) {
+            WebSocket webSocket = null;
+            try {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                if (scheme.equals("wss"))
+                    webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+                WsParameters wsp = new WsParameters()
+                        .setConnectionSoTimeout(10000, true)
+                        .setMaxMessages(Math.max(16, windows[windows.length - 1] * 2))
+                        .setMaxMessageLength(Math.max(125, messageSize + 64));
+                WsRpcService service = new WsRpcService(context, threads);
+                WsServer server = scheme.equals("wss")
+                        ? webSocket.startSecureServer(0, service, wsp)
+                        : webSocket.startServer(0, service, wsp);
+                server.ready();
+                for (int window : windows) {
+                    final LatencyHistogram latency = new LatencyHistogram();
+                    final AtomicLong errors = new AtomicLong();
+                    WsRpcClient rpc = new WsRpcClient(window);
+                    WsConnection conn = webSocket.connect(
+                            WsNetProxy.route(scheme + "://localhost:" + server.getPort()), rpc, wsp).ready();
+                    WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+                    WsRpcClient.Callback callback = new WsRpcClient.Callback() {
+                        @Override
+                        public void onResult(WsRpcClient.Call call, String result) {
+                            latency.record(call.getLatency());
+                        }
+
+                        @Override
+                        public void onError(WsRpcClient.Call call, Throwable e) {
+                            errors.incrementAndGet();
+                        }
+                    };
+                    long startNanos = System.nanoTime();
+                    WsRpcClient.Call last = null;
+                    for (int i = 0; i < requests && conn.isOpen(); i++) {
+                        last = rpc.call(method, params, callback);
+                    }
+                    if (last != null) {
+                        try {
+                            last.get(30000);
+                        } catch (Exception ignore) {
+                        }
+                    }
+                    long deadline = System.currentTimeMillis() + 30000; // the reordered calls
+                    while (rpc.getPending() > 0 && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                    }
+                    double seconds = (System.nanoTime() - startNanos) / 1e9;
+                    String line = String.format("%-4s %6d %10.0f %9s %9s %9d %9d",
+                            scheme, window, latency.getTotalCount() / seconds,
+                            LatencyHistogram.millis(latency.getValueAtPercentile(50)),
+                            LatencyHistogram.millis(latency.getValueAtPercentile(99)),
+                            rpc.getReordered(), errors.get() + rpc.getPending());
+                    ws_log(line);
+                    table.append("\r\n").append(line);
+                    conn.close("Completed");
+                }
+            } catch (Throwable e) {
+                ws_log("Unexpected: " + e);
+                e.printStackTrace();
+            }
+            if (webSocket != null) webSocket.closeAll("Completed");
+        }
+        ws_log("\r\n" + table);
+        ws_log("\r\nTest completed.");
+    }
+}
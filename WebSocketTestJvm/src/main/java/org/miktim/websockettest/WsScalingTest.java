@@ -0,0 +1,203 @@
+/*
+ * WebSocket connection scaling test. MIT (c) 2025 agent@local
+ *
+ * Ramps loopback connections up in steps. Every connection is a pair
+ * of WsConnection threads (client and server side) and each of them
+ * runs a WsListener thread. At each step records live threads,
+ * heap used (after GC), VmRSS/VmSize and Threads from /proc/self/status
+ * and the open file descriptors (/proc/self/fd), and prints the cost
+ * per connection pair against the baseline.
+ * The connect latency (connect().ready()) percentiles show the step
+ * where the accept degrades (p99 over 2x the first step).
+ * active=true: echo one message over every connection before measuring.
+ *
+ * Options (runner: scaling:key=value,...):
+ *   steps=100/250/500/1000/2000/4000 (connections) active=false size=1024 scheme=ws
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsScalingTest extends Thread {
+    final TestContext context;
+    final int[] steps;
+    final boolean active;
+    final int messageSize;
+    final String scheme;
+
+    final Semaphore echoed = new Semaphore(0);
+    final AtomicLong errors = new AtomicLong();
+
+    WsScalingTest(TestContext context, TestOptions options) {
+        this.context = context;
+        steps = options.getInts("steps", new int[]{100, 250, 500, 1000, 2000, 4000});
+        active = options.getBoolean("active", false);
+        messageSize = options.getInt("size", 1024);
+        scheme = options.getString("scheme", "ws");
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // kB value of the /proc/self/status field (VmRSS, VmSize, Threads), -1: n/a
+    static long procStatus(String field) {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1)
+                            .trim().split("\\s+")[0]);
+                }
+            }
+        } catch (Exception ignore) {
+        }
+        return -1;
+    }
+
+    static long openFiles() {
+        String[] fds = new File("/proc/self/fd").list();
+        return fds == null ? -1 : fds.length;
+    }
+
+    static long heapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // threads, heap bytes, VmRSS kB, fds
+    static long[] snapshot() {
+        long heap = heapUsed();
+        return new long[]{Thread.activeCount(), heap, procStatus("VmRSS"), openFiles()};
+    }
+
+    WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asByteArray();
+            echoed.release();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            if (errors.incrementAndGet() <= 10) ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+    };
+
+    String perConnection(long delta, int connections, double scale) {
+        return delta < 0 || connections == 0 ? "n/a"
+                : String.format("%.1f", delta / scale / connections);
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs connection scaling test"
+                + "\r\nSteps (connections): " + Arrays.toString(steps)
+                + (active ? "\r\nActive: " + messageSize + " bytes echo per connection" : "\r\nIdle")
+                + " Scheme: " + scheme
+                + "\r\nCost per connection pair (client + server side in this process)\r\n");
+        WebSocket webSocket = null;
+        List<WsConnection> connections = new ArrayList<>();
+        StringBuilder table = new StringBuilder(String.format(
+                "%6s %7s %8s %9s %7s %6s %9s %8s %8s %8s",
+                "conns", "threads", "heap MB", "VmRSS MB", "fds",
+                "thr/c", "heap KB/c", "RSS KB/c", "p50 ms", "p99 ms"));
+        try {
+            webSocket = new WebSocket(InetAddress.getByName("localhost"));
+            if (scheme.equals("wss"))
+                webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
+            WsParameters wsp = new WsParameters()
+                    .setHandshakeSoTimeout(20000)
+                    .setConnectionSoTimeout(20000, true)
+                    .setMaxMessageLength(Math.max(125, messageSize));
+            WsServer server = scheme.equals("wss")
+                    ? webSocket.startSecureServer(0, new WsEchoHandler(context), wsp)
+                    : webSocket.startServer(0, new WsEchoHandler(context), wsp);
+            server.ready();
+            String address = WsNetProxy.route(scheme + "://localhost:" + server.getPort());
+            byte[] payload = WsLoadTest.payload(messageSize);
+            long[] base = snapshot();
+            double baseP99 = -1;
+            String degraded = null;
+            for (int target : steps) {
+                LatencyHistogram accept = new LatencyHistogram();
+                String failure = null;
+                while (connections.size() < target) {
+                    long start = System.nanoTime();
+                    try {
+                        WsConnection conn = webSocket.connect(address, clientHandler, wsp).ready();
+                        if (!conn.isOpen()) throw new Exception(conn.getStatus().toString());
+                        connections.add(conn);
+                    } catch (Throwable e) {
+                        failure = e.toString();
+                        break;
+                    }
+                    accept.record(System.nanoTime() - start);
+                }
+                if (active) {
+                    echoed.drainPermits();
+                    for (WsConnection conn : connections) conn.send(payload);
+                    if (!echoed.tryAcquire(connections.size(), 60, TimeUnit.SECONDS))
+                        ws_log("Active round: lost echoes");
+                }
+                long[] now = snapshot();
+                int n = connections.size();
+                double p99 = accept.getValueAtPercentile(99);
+                if (baseP99 < 0) baseP99 = p99;
+                else if (degraded == null && p99 > 2 * baseP99)
+                    degraded = "Accept latency degraded at " + n + " connections";
+                String line = String.format(
+                        "%6d %7d %8.1f %9s %7d %6s %9s %8s %8s %8s",
+                        n, now[0], now[1] / 1048576.0,
+                        now[2] < 0 ? "n/a" : String.format("%.1f", now[2] / 1024.0), now[3],
+                        perConnection(now[0] - base[0], n, 1),
+                        perConnection(now[1] - base[1], n, 1024),
+                        perConnection(now[2] < 0 ? -1 : now[2] - base[2], n, 1),
+                        LatencyHistogram.millis(accept.getValueAtPercentile(50)),
+                        LatencyHistogram.millis(accept.getValueAtPercentile(99)));
+                ws_log(line);
+                table.append("\r\n").append(line);
+                if (failure != null) {
+                    ws_log("Connection " + (n + 1) + " failed: " + failure);
+                    break;
+                }
+            }
+            ws_log("\r\n" + table);
+            ws_log(degraded == null ? "\r\nAccept latency did not degrade" : "\r\n" + degraded);
+            ws_log(String.format("VmSize: %d MB Threads (/proc): %d",
+                    procStatus("VmSize") / 1024, procStatus("Threads")));
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (webSocket != null) webSocket.closeAll("Completed");
+        if (errors.get() > 0) ws_log("Client errors: " + errors.get());
+        ws_log("\r\nTest completed.");
+    }
+}
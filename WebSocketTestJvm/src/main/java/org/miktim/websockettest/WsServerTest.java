@@ -1,9 +1,5 @@
 package org.miktim.websockettest;
 
-
-import android.content.Intent;
-import android.net.Uri;
-
 import org.miktim.websocket.WebSocket;
 import org.miktim.websocket.WsConnection;
 import org.miktim.websocket.WsError;
@@ -15,15 +11,16 @@ import org.miktim.websocket.WsStatus;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class WsServerTest extends Thread {
-    final MainActivity context;
-    final ContextUtil util;
+    final TestContext context;
     public static final int MAX_MESSAGE_LENGTH = 10000000;// bytes
     public static final int TEST_SHUTDOWN_TIMEOUT = 20000;// millis
     public static final String WEBSOCKET_SUBPROTOCOLS = "chat,superChat";
+    public static final int MAX_POOLED_LENGTH = 1048576;// bytes
+    // the receive buffers grow on demand up to MAX_MESSAGE_LENGTH,
+    // the larger than MAX_POOLED_LENGTH ones are not kept (the app heap)
+    final BufferPool bufferPool = new BufferPool(MAX_POOLED_LENGTH, 2);
 
     String[] testNames = new String[]{
             "0. unknown WebSocket subprotocol (1006 expected)",
@@ -32,13 +29,12 @@ public class WsServerTest extends Thread {
             "3. waiting message too big (1009 expected)",
             "4. ping, waiting for server shutdown (1001 expected)"};
 
-    WsServerTest(MainActivity activity) {
-        context = activity;
-        util = new ContextUtil(context);
+    WsServerTest(TestContext context) {
+        this.context = context;
     }
 
     void ws_log(String msg) {
-        util.sendBroadcastMessage(msg);
+        context.log(msg);
     }
 
     String getTestId(WsConnection con) {
@@ -56,12 +52,10 @@ public class WsServerTest extends Thread {
                     .setSubProtocols(WEBSOCKET_SUBPROTOCOLS.split(","));
             final WsServer server = webSocket.startServer(8080, handler, wsp);
 // init shutdown timer
-            final Timer timer = new Timer(true); // is daemon
-            timer.schedule(new TimerTask() {
+            WsTimerWheel.shared().schedule(new Runnable() {
                 @Override
                 public void run() {
                     server.stopServer("Time is over!");
-                    timer.cancel();
                     ws_log("Time is over!");
                 }
             }, TEST_SHUTDOWN_TIMEOUT);
@@ -75,8 +69,8 @@ public class WsServerTest extends Thread {
                     + "\r\n\ns. wrong GET http request (1002 expected)");
 // call the default browser
             String testUrl = "http://miktim.github.io/websockettest/WsServerTest.html";
-            Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(testUrl));
-            context.startActivity(browserIntent);
+            context.openUrl(testUrl);
+            server.join(); // waiting for the server shutdown
 
         } catch (Exception e) {
             ws_log("Unexpected: " + e);
@@ -144,43 +138,37 @@ public class WsServerTest extends Thread {
 //        @Override
         public void onMessage(WsConnection con, InputStream is, boolean isText) {
             String testId = getTestId(con);
-            int messageLen;
-            byte[] messageBuffer = new byte[MAX_MESSAGE_LENGTH];
-            String message;
+            PooledMessage message = new PooledMessage(bufferPool, MAX_MESSAGE_LENGTH);
             try {
-                messageLen = is.read(messageBuffer, 0, messageBuffer.length);
-                if (is.read() != -1) {
-                    throw new IOException("Message too big");
-                } else if (isText) {
-                    message = new String(messageBuffer, 0, messageLen, "UTF-8");
-                    if (testId.equals("1")) { // wait browser closure
+                if (!isText) {
+                    ws_log("Unexpected binary: ignored");
+                } else if (testId.equals("1")) { // wait browser closure
 //                    ws_log(server + " onTEXT: ");
+                    if (con.isOpen()) {
+                        con.send(is, true); // streaming echo
+                    }
+                } else if (testId.equals("4")) { // ping, wait server shutdown
+                } else if (!testId.equals("2") && !testId.equals("3")) {
+                    con.send(is, true);
+                } else if (!message.read(is, isText)) {
+                    throw new IOException("Message too big");
+                } else if (testId.equals("2")) { // close by server
+                    if (message.asString().length() > 128) {
+                        con.close(WsStatus.NORMAL_CLOSURE,
+                                "Closed by server. Trim close reason longer than 123 bytes: lo-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-ng reason lo-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-ng reason");
+                    } else {
                         if (con.isOpen()) {
-                            con.send(message);
-                        }
-                    } else if (testId.equals("2")) { // close by server
-                        if (message.length() > 128) {
-                            con.close(WsStatus.NORMAL_CLOSURE,
-                                    "Closed by server. Trim close reason longer than 123 bytes: lo-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-ng reason lo-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-o-ng reason");
-                        } else {
-                            if (con.isOpen()) {
-                                con.send(message + message);
-                            }
+                            con.send(message.rewind(2), true); // message + message
                         }
-                    } else if (testId.equals("3")) { // message too big
-                        if (con.isOpen()) {
-                            try {
-                                con.send(message + message); // can throw java.lang.OutOfMemoryError
-                            } catch (java.lang.OutOfMemoryError e) {
-                                con.close(WsStatus.INTERNAL_ERROR, "Out of memory");
-                            }
+                    }
+                } else { // "3" message too big
+                    if (con.isOpen()) {
+                        try {
+                            con.send(message.rewind(2), true); // no message + message copies
+                        } catch (java.lang.OutOfMemoryError e) {
+                            con.close(WsStatus.INTERNAL_ERROR, "Out of memory");
                         }
-                    } else if (testId.equals("4")) { // ping, wait server shutdown
-                    } else {
-                        con.send(message);
                     }
-                } else {
-                    ws_log("Unexpected binary: ignored");
                 }
             } catch (IOException e) {
                 ws_log(String.format("[%s] server side onMessage send error: %s",
@@ -188,6 +176,8 @@ public class WsServerTest extends Thread {
             } catch (Error e) {
                 ws_log(String.format("[%s] Fatal error: %s",
                         testId, e));
+            } finally {
+                message.release();
             }
         }
     };
@@ -0,0 +1,96 @@
+/*
+ * WebSocket test service load test. MIT (c) 2025 agent@local
+ *
+ * Offline and repeatable: the WssClientTest state machine (connected,
+ * version, echo, ping, fragments, 5 x timer) runs in many concurrent
+ * sessions against the local stand-in of the websocketstest.com service
+ * (WsLocalService) with the test key file, no network access.
+ * The clients of a step start within the ramp time. For each step
+ * reports the passed/failed sessions and the session time percentiles
+ * (the idle session is about 7 s: ping answers in 2 s, then 5 timer ticks).
+ *
+ * Options (runner: service:key=value,...):
+ *   clients=50/200 (concurrent sessions per step) scheme=wss
+ *   ramp=1000 (ms) timeout=30 (s per session)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WsServiceLoadTest extends Thread {
+    final TestContext context;
+    final int[] steps;
+    final String scheme;
+    final int rampMillis;
+    final int timeout;
+
+    WsServiceLoadTest(TestContext context, TestOptions options) {
+        this.context = context;
+        steps = options.getInts("clients", new int[]{50, 200});
+        scheme = options.getString("scheme", "wss");
+        rampMillis = options.getInt("ramp", 1000);
+        timeout = options.getInt("timeout", 30);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs test service load test (offline, local service)"
+                + "\r\nScheme: " + scheme + " Ramp: " + rampMillis + " ms"
+                + " Session timeout: " + timeout + " s\r\n");
+        StringBuilder table = new StringBuilder(String.format("%7s %7s %7s %8s %8s %8s %8s",
+                "clients", "passed", "failed", "p50 s", "p99 s", "max s", "wall s"));
+        WsLocalService service = null;
+        try {
+            int backlog = 0;
+            for (int clients : steps) backlog = Math.max(backlog, clients);
+            service = new WsLocalService(context, scheme, 0, backlog);
+            WebSocket webSocket = service.newClient();
+            String uri = service.getUri();
+            ws_log("Service: " + uri);
+            for (int clients : steps) {
+                List<WssClientTest> sessions = new ArrayList<>();
+                long startNanos = System.nanoTime();
+                for (int i = 0; i < clients; i++) {
+                    WssClientTest session = new WssClientTest(context, uri, webSocket, false)
+                            .setShutdownTimeout(timeout * 1000);
+                    sessions.add(session);
+                    session.start();
+                    if (rampMillis > 0 && clients > 1) Thread.sleep(rampMillis / clients);
+                }
+                LatencyHistogram sessionTime = new LatencyHistogram();
+                int passed = 0;
+                for (WssClientTest session : sessions) {
+                    session.join();
+                    if (session.isPassed()) {
+                        passed++;
+                        sessionTime.record(session.getSessionNanos());
+                    }
+                }
+                double wall = (System.nanoTime() - startNanos) / 1e9;
+                String line = String.format("%7d %7d %7d %8.3f %8.3f %8.3f %8.3f",
+                        clients, passed, clients - passed,
+                        sessionTime.getValueAtPercentile(50) / 1e9,
+                        sessionTime.getValueAtPercentile(99) / 1e9,
+                        sessionTime.getMaxValue() / 1e9, wall);
+                ws_log(line);
+                table.append("\r\n").append(line);
+            }
+            webSocket.closeAll("Completed");
+        } catch (Throwable e) {
+            ws_log("Unexpected: " + e);
+            e.printStackTrace();
+        }
+        if (service != null) service.close();
+        ws_log("\r\n" + table);
+        ws_log("(session: connect to the 5th timer message)");
+        ws_log("\r\nTest completed.");
+    }
+}
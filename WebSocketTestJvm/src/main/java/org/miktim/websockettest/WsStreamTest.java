@@ -0,0 +1,152 @@
+/*
+ * WebSocket streaming echo benchmark. MIT (c) 2025 agent@local
+ *
+ * Large message echo: the server materializes the message (asByteArray)
+ * and sends it back, or streams the incoming WsMessage straight to
+ * WsConnection.send(InputStream, boolean) frame by frame.
+ * The client counts the echoed bytes without materializing them.
+ * Reports throughput, peak heap and allocation per message.
+ * Desktop/server JVM only (GcReport). Run with a small -Xmx to see
+ * which mode survives the maxMessageLength messages.
+ *
+ * Options (runner: stream:key=value,...):
+ *   sizes=65536/1048576/4194304/16777216 (bytes, the largest is maxMessageLength)
+ *   modes=materialize/stream count=5 buffer=32768 (setPayloadBufferLength) nodelay=true
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class WsStreamTest extends Thread {
+    final TestContext context;
+    final int[] sizes;
+    final String[] modes;
+    final int count;
+    final int payloadBufferLength;
+    final boolean tcpNoDelay;
+
+    final Semaphore echoed = new Semaphore(0);
+    volatile long echoedBytes;
+
+    WsStreamTest(TestContext context, TestOptions options) {
+        this.context = context;
+        sizes = options.getInts("sizes", new int[]{65536, 1048576, 4194304, 16777216});
+        modes = options.getStrings("modes", new String[]{"materialize", "stream"});
+        count = options.getInt("count", 5);
+        payloadBufferLength = options.getInt("buffer", 32768);
+        tcpNoDelay = options.getBoolean("nodelay", true);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    WsConnection.Handler clientHandler = new WsConnection.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+            WsEchoHandler.setTcpNoDelay(conn, tcpNoDelay);
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            long bytes = 0;
+            try {
+                while (msg.read() >= 0) bytes++;
+            } catch (IOException e) {
+                ws_log("Client read error: " + e);
+            }
+            echoedBytes = bytes;
+            echoed.release();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+            ws_log("Client onError: " + e);
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+            if (status.code != WsStatus.NORMAL_CLOSURE && status.code != WsStatus.GOING_AWAY)
+                ws_log("Client closed: " + status);
+            echoed.release(); // do not wait for the lost echo
+        }
+    };
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs streaming echo benchmark"
+                + "\r\nSizes: " + Arrays.toString(sizes)
+                + "\r\nModes: " + Arrays.toString(modes)
+                + " Messages per cell: " + count
+                + " Payload buffer: " + payloadBufferLength
+                + (tcpNoDelay ? " TCP_NODELAY" : "")
+                + "\r\nMax heap: " + Runtime.getRuntime().maxMemory() / 1048576 + " MB\r\n");
+        int maxSize = 125;
+        for (int size : sizes) maxSize = Math.max(maxSize, size);
+        String header = String.format("%-11s %9s %8s %12s %12s",
+                "mode", "size", "MB/s", "peak heap MB", "alloc MB/msg");
+        StringBuilder table = new StringBuilder(header);
+        for (String mode : modes) {
+            WebSocket webSocket = null;
+            try {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                WsParameters wsp = new WsParameters()
+                        .setMaxMessageLength(maxSize)
+                        .setPayloadBufferLength(payloadBufferLength)
+                        .setConnectionSoTimeout(30000, true);
+                WsServer server = webSocket.startServer(0, new WsEchoHandler(context, tcpNoDelay)
+                        .setStreaming(mode.equals("stream")), wsp);
+                server.ready();
+                WsConnection conn = webSocket.connect(
+                        WsNetProxy.route("ws://localhost:" + server.getPort()), clientHandler, wsp).ready();
+                for (int size : sizes) {
+                    byte[] payload = WsLoadTest.payload(size);
+                    echoed.drainPermits();
+                    System.gc();
+                    GcReport gc = new GcReport().start();
+                    long startNanos = System.nanoTime();
+                    int i = 0;
+                    for (; i < count && conn.isOpen(); i++) {
+                        conn.send(payload);
+                        if (!echoed.tryAcquire(60, TimeUnit.SECONDS) || echoedBytes != size) break;
+                    }
+                    double seconds = (System.nanoTime() - startNanos) / 1e9;
+                    String line;
+                    if (i < count) {
+                        line = String.format("%-11s %9d %8s failed: %s",
+                                mode, size, "", conn.getStatus());
+                    } else {
+                        long allocated = gc.getAllocatedBytes();
+                        line = String.format("%-11s %9d %8.2f %12.1f %12s",
+                                mode, size, 2.0 * count * size / seconds / 1e6,
+                                GcReport.getPeakHeap() / 1048576.0,
+                                allocated < 0 ? "n/a"
+                                        : String.format("%.2f", allocated / 1048576.0 / count));
+                    }
+                    ws_log(line);
+                    table.append("\r\n").append(line);
+                    if (!conn.isOpen()) break;
+                }
+            } catch (Throwable e) {
+                ws_log("Unexpected: " + e);
+                e.printStackTrace();
+            } finally {
+                if (webSocket != null) webSocket.closeAll("Completed");
+            }
+        }
+        ws_log("\r\n" + table);
+        ws_log("\r\nTest completed.");
+    }
+}
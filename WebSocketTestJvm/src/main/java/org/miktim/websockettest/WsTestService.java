@@ -0,0 +1,171 @@
+/*
+ * Server side of the websocketstest.com test protocol.
+ * Adapted by miktim@mail.ru, march 2021
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsError;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsStatus;
+
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Commands: "version,", "echo,text", "ping,", "fragments,text", "timer,"
+ * verbose: log the connection events (client-server test),
+ * quiet for the load tests.
+ */
+public class WsTestService implements WsConnection.Handler {
+    // the timer tasks must not block the shared wheel thread: conn.send()
+    // runs here. The pool is bounded, stalled peers can hold all of its
+    // threads but never grow it, the busy flags keep one send per task queued
+    static final ExecutorService sender = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "WsTestService-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    final TestContext context;
+    final int MAX_MESSAGE_LENGTH = 10000; //
+    final BufferPool bufferPool = new BufferPool(MAX_MESSAGE_LENGTH, 64);
+    boolean verbose = true;
+    final ConcurrentHashMap<WsConnection, WsTimerWheel.Timeout> timers = new ConcurrentHashMap<>();
+
+    public WsTestService(TestContext context) {
+        this.context = context;
+    }
+
+    public WsTestService setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // busy: skip the send while the previous one of the task is blocked
+    static void sendLater(final WsConnection conn, final String message, final AtomicBoolean busy) {
+        if (!busy.compareAndSet(false, true)) return;
+        try {
+            sender.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (conn.isOpen()) conn.send(message);
+                    } catch (Exception ignore) { // closed
+                    } finally {
+                        busy.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            busy.set(false);
+        }
+    }
+
+    @Override
+    public void onOpen(WsConnection conn, String subProtocol) {
+        try {
+            conn.send("connected,");
+            if (verbose) ws_log("Server side opened.");
+        } catch (WsError e) {
+            ws_log("Server side onOpen send() error: " + e);
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onMessage(WsConnection conn, WsMessage msg) {
+        onMessage(conn, msg, msg.isText());
+    }
+
+    //        @Override
+    public void onMessage(final WsConnection conn, InputStream is, boolean isUTF8Text) {
+        PooledMessage message = new PooledMessage(bufferPool, MAX_MESSAGE_LENGTH);
+        String cmd;
+        try {
+            if (!message.read(is, isUTF8Text)) {
+                conn.close(WsStatus.MESSAGE_TOO_BIG, "Message too big");
+                ws_log("Server side: message too big");
+                return;
+            }
+            if (!isUTF8Text) {
+                ws_log("Server side: unexpected binary. Ignored");
+                return;
+            }
+            if (message.startsWith("echo,") || message.startsWith("fragments,")) {
+                conn.send(message, true); // as is, without decoding
+                return;
+            }
+            cmd = message.asString();
+            message.release(); // before the long running commands
+
+            switch (cmd.split(",")[0]) {
+                case ("version"):
+                    conn.send("version,hybi-draft-13");
+                    break;
+                case ("ping"): // the shared timer instead of a sleeping handler
+                    WsTimerWheel.shared().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            sendLater(conn, "ping,success", new AtomicBoolean());
+                        }
+                    }, 2000);
+                    break;
+                case ("timer"):
+                    final SimpleDateFormat formatter
+                            = new SimpleDateFormat("yyyy/MM/dd hh:mm:ss");
+                    final AtomicBoolean busy = new AtomicBoolean();
+                    WsTimerWheel.Timeout timer = WsTimerWheel.shared().scheduleAtFixedRate(new Runnable() {
+                        @Override
+                        public void run() {
+                            sendLater(conn, "time," + formatter.format(new Date()), busy);
+                        }
+                    }, 0, 1000);
+                    WsTimerWheel.Timeout previous = timers.put(conn, timer);
+                    if (previous != null) previous.cancel();
+                    break;
+                default:
+                    ws_log("Server side: unknown command. Ignored. ");
+            }
+        } catch (Exception e) {
+            ws_log("Server side onMessage error: " + e);
+            e.printStackTrace();
+        } finally {
+            message.release();
+        }
+    }
+
+    @Override
+    public void onError(WsConnection conn, Throwable e) {
+        ws_log("Server side onError: " + e);
+    }
+
+    @Override
+    public void onClose(WsConnection conn, WsStatus closeStatus) {
+        WsTimerWheel.Timeout timer = timers.remove(conn);
+        if (timer != null) timer.cancel();
+        if (verbose) {
+            ws_log("Server side closed. " + closeStatus);
+            ws_log("\r\nTest completed.");
+        }
+    }
+}
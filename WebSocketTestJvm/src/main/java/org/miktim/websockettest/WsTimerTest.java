@@ -0,0 +1,250 @@
+/*
+ * WebSocket periodic senders benchmark. MIT (c) 2025 agent@local
+ *
+ * Many periodic senders (as the "timer" command of WsTestService)
+ * share a few connections to a sink server. Modes:
+ *   threads - a sleeping thread per sender (the former "timer" command)
+ *   timer   - one java.util.Timer (a heap of the tasks)
+ *   wheel   - WsTimerWheel (hashed wheel, 10 ms ticks)
+ * The timer and the wheel tasks hand conn.send() to the WsTestService
+ * sender pool, as the service does: a slow socket must not hold the
+ * scheduler thread. A send is skipped while the previous one of the same
+ * sender is pending. Reports the process threads and CPU use, the
+ * messages/s, the skipped sends and the lateness of the tasks against
+ * their schedule.
+ *
+ * Options (runner: timers:key=value,...):
+ *   modes=threads/timer/wheel senders=10000 connections=20
+ *   period=1000 (ms) duration=10 (s)
+ */
+
+package org.miktim.websockettest;
+
+import org.miktim.websocket.WebSocket;
+import org.miktim.websocket.WsConnection;
+import org.miktim.websocket.WsMessage;
+import org.miktim.websocket.WsParameters;
+import org.miktim.websocket.WsServer;
+import org.miktim.websocket.WsStatus;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WsTimerTest extends Thread {
+    final TestContext context;
+    final String[] modes;
+    final int senderCount;
+    final int connections;
+    final long periodMillis;
+    final int duration;
+
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+    LatencyHistogram lateness;
+    volatile boolean running;
+    final AtomicLong errors = new AtomicLong();
+
+    WsTimerTest(TestContext context, TestOptions options) {
+        this.context = context;
+        modes = options.getStrings("modes", new String[]{"threads", "timer", "wheel"});
+        senderCount = options.getInt("senders", 10000);
+        connections = options.getInt("connections", 20);
+        periodMillis = options.getLong("period", 1000);
+        duration = options.getInt("duration", 10);
+    }
+
+    void ws_log(String msg) {
+        context.log(msg);
+    }
+
+    // one periodic send, the schedule is kept by the sender
+    class Sender implements Runnable {
+        final WsConnection conn;
+        final boolean dispatch; // send in the WsTestService pool
+        final AtomicBoolean busy = new AtomicBoolean();
+        long next; // nanoTime
+
+        Sender(WsConnection conn, long first, boolean dispatch) {
+            this.conn = conn;
+            this.next = first;
+            this.dispatch = dispatch;
+        }
+
+        @Override
+        public void run() {
+            lateness.record(System.nanoTime() - next);
+            next += periodMillis * 1000000L;
+            if (!dispatch) {
+                send();
+                return;
+            }
+            if (!busy.compareAndSet(false, true)) {
+                skipped.incrementAndGet();
+                return;
+            }
+            try {
+                WsTestService.sender.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            send();
+                        } finally {
+                            busy.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                busy.set(false);
+            }
+        }
+
+        void send() {
+            try {
+                if (conn.isOpen()) {
+                    conn.send("tick");
+                    sent.incrementAndGet();
+                }
+            } catch (Throwable e) {
+                if (errors.incrementAndGet() <= 10) ws_log("Send error: " + conn.getStatus());
+            }
+        }
+    }
+
+    final WsServer.Handler sink = new WsServer.Handler() {
+        @Override
+        public void onOpen(WsConnection conn, String subProtocol) {
+        }
+
+        @Override
+        public void onMessage(WsConnection conn, WsMessage msg) {
+            msg.asByteArray();
+        }
+
+        @Override
+        public void onError(WsConnection conn, Throwable e) {
+        }
+
+        @Override
+        public void onClose(WsConnection conn, WsStatus status) {
+        }
+
+        @Override
+        public void onStart(WsServer server, WsParameters wsp) {
+        }
+
+        @Override
+        public void onStop(WsServer server, Throwable e) {
+        }
+    };
+
+    public void run() {
+        ws_log(null); // clear console
+        ws_log("\r\nWs periodic senders benchmark"
+                + "\r\nModes: " + Arrays.toString(modes)
+                + " Senders: " + senderCount + " over " + connections + " connections"
+                + "\r\nPeriod: " + periodMillis + " ms Duration: " + duration + " s\r\n");
+        StringBuilder table = new StringBuilder(String.format("%-8s %8s %7s %9s %8s %9s %9s",
+                "mode", "threads", "CPU %", "msgs/s", "skipped", "late p50", "late p99"));
+        for (String mode : modes) {
+            WebSocket webSocket = null;
+            List<Thread> threads = new ArrayList<>();
+            Timer timer = null;
+            WsTimerWheel wheel = null;
+            running = true;
+            try {
+                webSocket = new WebSocket(InetAddress.getByName("localhost"));
+                WsParameters wsp = new WsParameters()
+                        .setConnectionSoTimeout(20000, true)
+                        .setMaxMessages(senderCount); // the late senders fire together
+                WsServer server = webSocket.startServer(0, sink, wsp);
+                server.ready();
+                String address = WsNetProxy.route("ws://localhost:" + server.getPort());
+                WsConnection[] conns = new WsConnection[connections];
+                for (int i = 0; i < connections; i++) {
+                    conns[i] = webSocket.connect(address, sink, wsp).ready();
+                }
+                lateness = new LatencyHistogram();
+                sent.set(0);
+                skipped.set(0);
+                if (mode.equals("timer")) timer = new Timer(true);
+                if (mode.equals("wheel")) wheel = new WsTimerWheel(10, 512);
+                // after all the senders are scheduled (thread start is slow)
+                long startNanos = System.nanoTime() + 500000000L + senderCount * 200000L;
+                for (int i = 0; i < senderCount; i++) {
+                    long phaseMillis = periodMillis * i / senderCount; // spread over the period
+                    final Sender sender = new Sender(conns[i % connections],
+                            startNanos + phaseMillis * 1000000L, !mode.equals("threads"));
+                    long delayMillis = Math.max(0, (sender.next - System.nanoTime()) / 1000000L);
+                    if (timer != null) {
+                        timer.scheduleAtFixedRate(new TimerTask() {
+                            @Override
+                            public void run() {
+                                sender.run();
+                            }
+                        }, delayMillis, periodMillis);
+                    } else if (wheel != null) {
+                        wheel.scheduleAtFixedRate(sender, delayMillis, periodMillis);
+                    } else {
+                        Thread thread = new Thread("Sender-" + i) {
+                            @Override
+                            public void run() {
+                                while (running) {
+                                    long millis = (sender.next - System.nanoTime()) / 1000000L;
+                                    try {
+                                        if (millis > 0) Thread.sleep(millis);
+                                    } catch (InterruptedException e) {
+                                        break;
+                                    }
+                                    if (running) sender.run();
+                                }
+                            }
+                        };
+                        thread.setDaemon(true);
+                        thread.start();
+                        threads.add(thread);
+                    }
+                }
+                Thread.sleep(Math.max(0, (startNanos - System.nanoTime()) / 1000000L));
+                long startCpu = GcReport.getProcessCpuNanos();
+                long startSent = sent.get();
+                long startSkipped = skipped.get();
+                lateness.reset();
+                Thread.sleep(duration * 1000L);
+                double seconds = (System.nanoTime() - startNanos) / 1e9;
+                long cpu = GcReport.getProcessCpuNanos() - startCpu;
+                String line = String.format("%-8s %8d %7s %9.0f %8d %9s %9s",
+                        mode, WsScalingTest.procStatus("Threads"),
+                        startCpu < 0 ? "n/a" : String.format("%.1f", cpu / 1e9 / seconds * 100),
+                        (sent.get() - startSent) / seconds, skipped.get() - startSkipped,
+                        LatencyHistogram.millis(lateness.getValueAtPercentile(50)),
+                        LatencyHistogram.millis(lateness.getValueAtPercentile(99)));
+                ws_log(line);
+                table.append("\r\n").append(line);
+            } catch (Throwable e) {
+                ws_log("Unexpected: " + e);
+                e.printStackTrace();
+            }
+            running = false;
+            if (timer != null) timer.cancel();
+            if (wheel != null) wheel.stop();
+            for (Thread thread : threads) thread.interrupt();
+            try {
+                for (Thread thread : threads) thread.join();
+            } catch (InterruptedException ignore) {
+            }
+            if (webSocket != null) webSocket.closeAll("Completed");
+        }
+        ws_log("\r\n" + table);
+        ws_log("(CPU %: of one core; skipped: the previous send of the sender pending;"
+                + " late: the task behind its schedule, ms)");
+        if (errors.get() > 0) ws_log("Errors: " + errors.get());
+        ws_log("\r\nTest completed.");
+    }
+}
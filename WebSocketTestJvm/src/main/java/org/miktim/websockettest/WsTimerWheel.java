@@ -0,0 +1,174 @@
+/*
+ * WebSocket test. MIT (c) 2025 agent@local
+ */
+
+package org.miktim.websockettest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Hashed-wheel timer: one daemon thread serves any number of timeouts
+ * and periodic tasks (periodic sends, test deadlines, heartbeats)
+ * with the tick resolution. Scheduling and cancel are O(1).
+ * The tasks run in the wheel thread and must not block: hand the
+ * blocking work over to an executor.
+ * Use the harness timer:
+ *   Timeout deadline = WsTimerWheel.shared().schedule(task, 10000);
+ *   ...
+ *   deadline.cancel();
+ */
+public class WsTimerWheel {
+    static WsTimerWheel shared;
+
+    public static synchronized WsTimerWheel shared() {
+        if (shared == null) shared = new WsTimerWheel(10, 512);
+        return shared;
+    }
+
+    public class Timeout {
+        final Runnable task;
+        final long periodTicks;
+        long deadlineTick;
+        long rounds;
+        volatile boolean cancelled = false;
+
+        Timeout(Runnable task, long deadlineTick, long periodTicks) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+            this.periodTicks = periodTicks;
+        }
+
+        public synchronized void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                pending.decrementAndGet();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    final long tickNanos;
+    final List<Timeout>[] wheel;
+    final int mask;
+    final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+    final AtomicInteger pending = new AtomicInteger();
+    final long startNanos = System.nanoTime();
+    volatile long tick = 0; // the next tick to process
+    final Thread worker;
+
+    // wheelSize: rounded up to a power of two
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WsTimerWheel(long tickMillis, int wheelSize) {
+        tickNanos = Math.max(1, tickMillis) * 1000000L;
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        wheel = new List[size];
+        for (int i = 0; i < size; i++) wheel[i] = new ArrayList<>();
+        mask = size - 1;
+        worker = new Thread("WsTimerWheel") {
+            @Override
+            public void run() {
+                while (!isInterrupted()) {
+                    long deadline = startNanos + (tick + 1) * tickNanos;
+                    long now;
+                    while ((now = System.nanoTime()) < deadline) LockSupport.parkNanos(deadline - now);
+                    transfer();
+                    expire(wheel[(int) (tick & mask)]);
+                    tick++;
+                }
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    long ticks(long millis) {
+        return Math.max(1, (millis * 1000000L + tickNanos - 1) / tickNanos);
+    }
+
+    // the first tick at or after the delay (tick k runs at (k + 1) * tickNanos)
+    long deadlineTick(long delayMillis) {
+        long nanos = System.nanoTime() - startNanos + Math.max(0, delayMillis) * 1000000L;
+        return Math.max(tick, (nanos + tickNanos - 1) / tickNanos - 1);
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return add(new Timeout(task, deadlineTick(delayMillis), 0));
+    }
+
+    // first run after delayMillis, then every periodMillis (no drift)
+    public Timeout scheduleAtFixedRate(Runnable task, long delayMillis, long periodMillis) {
+        return add(new Timeout(task, deadlineTick(delayMillis), ticks(periodMillis)));
+    }
+
+    Timeout add(Timeout timeout) {
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    // wheel thread only
+    void place(Timeout timeout) {
+        long ticks = Math.max(timeout.deadlineTick, tick);
+        timeout.rounds = (ticks - tick) / wheel.length;
+        wheel[(int) (ticks & mask)].add(timeout);
+    }
+
+    void transfer() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (!timeout.cancelled) place(timeout);
+        }
+    }
+
+    // compacts the bucket in place: the kept timeouts keep their order
+    void expire(List<Timeout> bucket) {
+        List<Timeout> periodic = null;
+        int size = bucket.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.cancelled) continue;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            try {
+                timeout.task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+                timeout.cancel();
+            }
+            if (timeout.periodTicks > 0) {
+                if (timeout.cancelled) continue;
+                timeout.deadlineTick += timeout.periodTicks;
+                if (periodic == null) periodic = new ArrayList<>();
+                periodic.add(timeout);
+            } else {
+                timeout.cancel();
+            }
+        }
+        bucket.subList(kept, size).clear();
+        if (periodic != null) {
+            tick++; // the bucket is done: a late timeout goes to the next one
+            for (Timeout timeout : periodic) place(timeout);
+            tick--;
+        }
+    }
+
+    // scheduled and not yet expired or cancelled
+    public int getPending() {
+        return pending.get();
+    }
+
+    public void stop() {
+        worker.interrupt();
+    }
+}
@@ -7,7 +7,6 @@ package org.miktim.websockettest;
 
 import org.miktim.websocket.WebSocket;
 import org.miktim.websocket.WsConnection;
-import org.miktim.websocket.WsError;
 import org.miktim.websocket.WsMessage;
 import org.miktim.websocket.WsServer;
 import org.miktim.websocket.WsParameters;
@@ -16,17 +15,12 @@ import org.miktim.websocket.WsStatus;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
-public class WsWssClientServerTest {
+public class WsWssClientServerTest extends Thread {
 
-    final MainActivity context;
-    final ContextUtil util;
+    final TestContext context;
     final int MAX_MESSAGE_LENGTH = 10000; //
+    final BufferPool bufferPool = new BufferPool(MAX_MESSAGE_LENGTH, 4);
     final int TEST_SHUTDOWN_TIMEOUT = 7000; //milliseconds
     int PORT = 8080;
     String REMOTE_CONNECTION;//
@@ -34,17 +28,18 @@ public class WsWssClientServerTest {
 
     String fragmentTest = randomString(512);
     int counter = 0;
+    final WsConnection.Handler serverSideHandler;
 
-    WsWssClientServerTest(MainActivity activity, String scheme) {
-        context = activity;
-        util = new ContextUtil(context);
+    WsWssClientServerTest(TestContext context, String scheme) {
+        this.context = context;
         this.scheme = scheme;
+        serverSideHandler = new WsTestService(context);
         PORT = scheme.equals("ws") ? 8080 : 8443;
-        REMOTE_CONNECTION = scheme + "://localhost:" + PORT;
+        REMOTE_CONNECTION = WsNetProxy.route(scheme + "://localhost:" + PORT);
     }
 
     void ws_log(String msg) {
-        util.sendBroadcastMessage(msg);
+        context.log(msg);
     }
 
     public void ws_send(WsConnection con, String msg) throws IOException {
@@ -62,89 +57,6 @@ public class WsWssClientServerTest {
         return randomstring.toString();
     }
 
-    synchronized void sleep(int millis) throws InterruptedException {
-        this.wait(millis);
-    }
-
-    WsConnection.Handler serverSideHandler = new WsConnection.Handler(){
-        String cmd = "";
-
-        @Override
-        public void onOpen(WsConnection conn, String subProtocol) {
-            try {
-                conn.send("connected,");
-                ws_log("Server side opened.");
-            } catch (WsError e) {
-                ws_log("Server side onOpen send() error: " + e);
-                e.printStackTrace();
-            }
-        }
-
-        @Override
-        public void onMessage(WsConnection conn, WsMessage msg) {
-           onMessage(conn, msg, msg.isText());
-        }
-//        @Override
-        public void onMessage(WsConnection conn, InputStream is, boolean isUTF8Text) {
-            byte[] messageBuffer = new byte[MAX_MESSAGE_LENGTH];
-            int messageLen;
-            try {
-                messageLen = is.read(messageBuffer);
-                if (is.read() != -1) {
-                    conn.close(WsStatus.MESSAGE_TOO_BIG, "Message too big");
-                    ws_log("Server side: message too big");
-                    return;
-                }
-                if (isUTF8Text) {
-                    cmd = new String(messageBuffer, 0, messageLen, "UTF-8");
-                } else {
-                    ws_log("Server side: unexpected binary. Ignored");
-                    return;
-                }
-
-                switch (cmd.split(",")[0]) {
-                    case ("version"):
-                        conn.send("version,hybi-draft-13");
-                        break;
-                    case ("echo"):
-                        conn.send(cmd);
-                        break;
-                    case ("ping"):
-                        sleep(2000);
-                        if(conn.isOpen()) conn.send("ping,success");
-                        break;
-                    case ("fragments"):
-                        conn.send(cmd);
-                        break;
-                    case ("timer"):
-                        SimpleDateFormat formatter
-                                = new SimpleDateFormat ("yyyy/MM/dd hh:mm:ss");
-                        while (conn.isOpen()) {
-                            conn.send("time,"+ formatter.format(new Date()));
-                            sleep(1000);
-                        }
-                        break;
-                    default:
-                        ws_log("Server side: unknown command. Ignored. ");
-                }
-            } catch (Exception e) {
-                ws_log("Server side onMessage error: " + e);
-                e.printStackTrace();
-            }
-        }
-
-        @Override
-        public void onError(WsConnection conn, Throwable e) {
-            ws_log("Server side onError: " + e);
-        }
-
-        @Override
-        public void onClose(WsConnection conn, WsStatus closeStatus) {
-            ws_log("Server side closed. "+ closeStatus);
-            ws_log("\r\nTest completed.");
-        }
-    };
-
     WsConnection.Handler clientHandler = new WsConnection.Handler() {
         @Override
         public void onOpen(WsConnection con, String subp) {
@@ -171,21 +83,20 @@ public class WsWssClientServerTest {
 
 //        @Override
         public void onMessage(WsConnection con, InputStream is, boolean isText) {
-            byte[] messageBuffer = new byte[MAX_MESSAGE_LENGTH];
-            int messageLen = 0;
-
+            PooledMessage message = new PooledMessage(bufferPool, MAX_MESSAGE_LENGTH);
             try {
-                messageLen = is.read(messageBuffer, 0, messageBuffer.length);
-                if (is.read() != -1) {
+                if (!message.read(is, isText)) {
                     con.close(WsStatus.MESSAGE_TOO_BIG, "Message too big");
                 } else if (isText) {
-                    onMessage(con, new String(messageBuffer, 0, messageLen, "UTF-8"));
+                    onMessage(con, message.asString());
                 } else {
-                    onMessage(con, Arrays.copyOfRange(messageBuffer, 0, messageLen));
+                    onMessage(con, message.toByteArray());
                 }
             } catch (Exception e) {
                 ws_log("Client onMesage error: " + e);
 //                    e.printStackTrace();
+            } finally {
+                message.release();
             }
         }
 
@@ -239,14 +150,12 @@ public class WsWssClientServerTest {
         }
     };
 
-    void start() {
+    public void run() {
         ws_log(null); // clear console
         try {
-            String[] keyInfo = MainActivity.KEY_FILE.split(";");
-            util.saveAssetAsFile(keyInfo[0]);
             final WebSocket webSocket = new WebSocket(InetAddress.getByName("localhost"));
             if(scheme.equals("wss"))
-                webSocket.setKeyFile(util.keyFile(keyInfo[0]), keyInfo[1]);
+                webSocket.setKeyFile(context.getKeyFile(), context.getKeyPassword());
             WsParameters wsp = new WsParameters() //
                     .setConnectionSoTimeout(1000, true)
                     .setPayloadBufferLength(fragmentTest.getBytes("UTF-8").length);
@@ -273,15 +182,18 @@ public class WsWssClientServerTest {
                         = webSocket.connect(REMOTE_CONNECTION, clientHandler, wsp);
 
             webSocket.resetKeyFile();
-            final Timer timer = new Timer();
-            timer.schedule(new TimerTask() {
+            final WsTimerWheel.Timeout timer = WsTimerWheel.shared().schedule(new Runnable() {
                 @Override
                 public void run() {
                     webSocket.closeAll("Time is over!");
-                    timer.cancel();
 //                    ws_log("\r\nCompleted.");
                 }
             }, TEST_SHUTDOWN_TIMEOUT);
+            wsConnection.join();
+            for (WsConnection conn : wsServer.listConnections()) conn.join();
+            timer.cancel();
+            wsServer.stopServer();
+            wsServer.join();
         } catch (Throwable e) {
             ws_log("Unexpected: " + e);
             e.printStackTrace();
@@ -7,32 +7,76 @@ package org.miktim.websockettest;
 
 import org.miktim.websocket.WebSocket;
 import org.miktim.websocket.WsConnection;
-import org.miktim.websocket.WsError;
 import org.miktim.websocket.WsMessage;
 import org.miktim.websocket.WsParameters;
 import org.miktim.websocket.WsStatus;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
+/*
+ * The client state machine of the websocketstest.com test:
+ *   WssClientTest(context) - remote service, cleartext fallback
+ *   WssClientTest(context, true) - offline, the local stand-in (WsLocalService)
+ *   WssClientTest(context, uri, webSocket, false) - quiet session of a load
+ *     test (WsServiceLoadTest): see isPassed(), getSessionNanos()
+ */
 public class WssClientTest extends Thread{
-    final MainActivity context;
-    final ContextUtil util;
+    final TestContext context;
     final int MAX_MESSAGE_LENGTH = 10000; // bytes
     final int TEST_SHUTDOWN_TIMEOUT = 10000; // millis
     final String REMOTE_CONNECTION = "wss://websocketstest.com/service";//
+    final boolean local; // start the local stand-in
+    final boolean verbose;
+    String remoteConnection = REMOTE_CONNECTION;
+    WebSocket webSocket; // null: own instance
+    int shutdownTimeout = TEST_SHUTDOWN_TIMEOUT;
     String fragmentTest = randomString(512);
     int counter = 0;
+    volatile int failures = 0;
+    volatile boolean passed = false;
+    long startNanos;
+    volatile long sessionNanos = -1;
     WsConnection wsConnection;
-    final Timer timer = new Timer();
+    volatile WsTimerWheel.Timeout timer; // test deadline
+
+    WssClientTest(TestContext context) {
+        this(context, false);
+    }
+
+    WssClientTest(TestContext context, boolean local) {
+        this.context = context;
+        this.local = local;
+        this.verbose = true;
+    }
+
+    WssClientTest(TestContext context, String uri, WebSocket webSocket, boolean verbose) {
+        this.context = context;
+        this.local = false;
+        this.verbose = verbose;
+        this.remoteConnection = uri;
+        this.webSocket = webSocket;
+    }
 
-    WssClientTest(MainActivity activity) {
-        context = activity;
-        util = new ContextUtil(context);
+    WssClientTest setShutdownTimeout(int millis) {
+        shutdownTimeout = millis;
+        return this;
+    }
+
+    // all the commands succeeded
+    public boolean isPassed() {
+        return passed;
+    }
+
+    // connect to the last "time", -1: not passed
+    public long getSessionNanos() {
+        return sessionNanos;
     }
 
     void ws_log(String msg) {
-        util.sendBroadcastMessage(msg);
+        if (verbose) context.log(msg);
+    }
+
+    void failed() {
+        failures++;
+        ws_log("Failed!");
     }
 
     public void ws_send(WsConnection con, String msg) {
@@ -65,13 +109,15 @@ public class WssClientTest extends Thread{
 
         @Override
         public void onError(WsConnection con, Throwable e) {
+            failures++;
             ws_log("Error: " + e.toString());
-            e.printStackTrace();
+            if (verbose) e.printStackTrace();
         }
 
         @Override
         public void onMessage(WsConnection con, WsMessage msg) {
             if (!msg.isText()) {
+                failures++;
                 ws_log("rcv: unexpected binary");
                 con.close(WsStatus.UNSUPPORTED_DATA, "Unexpected binary");
                 return;
@@ -86,34 +132,40 @@ public class WssClientTest extends Thread{
                 ws_send(con, "version,");
             } else if (cmd.equals("version")) {
                 if (!response.equals("hybi-draft-13")) {
+                    failures++;
                     ws_log("Something wrong...");
                 } else ws_log("OK");
                 counter = 0;
                 ws_send(con, "echo,test message");
             } else if (cmd.equals("ping")) {
                 if (!response.equals("success")) {
-                    ws_log("Failed!");
+                    failed();
                 } else ws_log("OK");
                 counter = 0;
                 ws_send(con, "fragments," + fragmentTest);
             } else if (cmd.equals("fragments")) {
                 if (!response.equals(fragmentTest)) {
-                    ws_log("Failed!");
+                    failed();
                 } else ws_log("OK");
                 counter = 0;
                 ws_send(con, "timer,");
             } else if (cmd.equals("echo")) {
                 if (!response.equals("test message")) {
-                    ws_log("Failed!");
+                    failed();
                 } else ws_log("OK");
                 ws_send(con, "ping,");
             } else if (cmd.equals("time")) {
                 if (++counter > 4) {
                     ws_log("OK");
+                    if (failures == 0) {
+                        sessionNanos = System.nanoTime() - startNanos;
+                        passed = true;
+                    }
                     con.close(WsStatus.NORMAL_CLOSURE, "Completed");
-                    timer.cancel();
+                    if (timer != null) timer.cancel();
                 }
             } else {
+                failures++;
                 ws_log("rcv: unknown command");
             }
         }
@@ -121,11 +173,19 @@ public class WssClientTest extends Thread{
 
     public void run() {
         ws_log(null); // clear console
+        WsLocalService service = null;
         try {
-            final WebSocket webSocket = new WebSocket();
+            boolean fallback = webSocket == null && !local; // the remote service
+            if (local) {
+                service = new WsLocalService(context, "wss", 0, 50);
+                remoteConnection = service.getUri();
+                webSocket = service.newClient();
+            } else if (webSocket == null) {
+                webSocket = new WebSocket();
+            }
             WsParameters wsp = new WsParameters()
                     .setMaxMessageLength(MAX_MESSAGE_LENGTH); //
-            wsp.setConnectionSoTimeout(TEST_SHUTDOWN_TIMEOUT, true);
+            wsp.setConnectionSoTimeout(shutdownTimeout, true);
 //            String sslProtocols = "TLSv1.2";//TLSv1.2 TLSv1.1 TLSv1 TLSv1.3"; //
 //            wsp.getSSLParameters().setProtocols(sslProtocols.split(" "));
 //            wsp.getSSLParameters().setCipherSuites(
@@ -133,41 +193,50 @@ public class WssClientTest extends Thread{
 
 //            wsp.setSSLParameters(null);
 
-            if (android.os.Build.VERSION.SDK_INT < 25) {
+            int api = context.getAndroidApi();
+            if (api > 0 && api < 25) {
                 ws_log("WARNING! \nTLS connection requires API 25 and later." +
-                        "\nCurrent API is " + android.os.Build.VERSION.SDK_INT);
+                        "\nCurrent API is " + api);
             }
 
 // the site does not accept fragmented messages
 //          wsp.setPayloadLength(fragmentTest.length()/2); // not work!
 
             ws_log("\r\nWss client test"
-                    + "\r\nTrying to connect to " + REMOTE_CONNECTION
+                    + (local ? " (offline, local service)" : "")
+                    + "\r\nTrying to connect to " + remoteConnection
                     + "\r\nTest will be terminated after "
-                    + (TEST_SHUTDOWN_TIMEOUT / 1000) + " seconds"
+                    + (shutdownTimeout / 1000) + " seconds"
                     + "\r\n");
 
+            startNanos = System.nanoTime();
             wsConnection
-                    = webSocket.connect(REMOTE_CONNECTION, clientHandler, wsp);
-            timer.schedule(new TimerTask() {
+                    = webSocket.connect(remoteConnection, clientHandler, wsp);
+            timer = WsTimerWheel.shared().schedule(new Runnable() {
                 @Override
                 public void run() {
                     wsConnection.close(WsStatus.GOING_AWAY, "Time is over!");
-                    timer.cancel();
                 }
-            }, TEST_SHUTDOWN_TIMEOUT);
+            }, shutdownTimeout);
 
             wsConnection.ready(); // waiting for handshake completed
             if (wsConnection.getStatus().error != null) {
-                ws_log("\r\nTrying cleartext connection...\r\n");
-                wsConnection
-                        = webSocket.connect(REMOTE_CONNECTION.replace("wss:", "ws:"), clientHandler, wsp);
+                failures++;
+                if (fallback) {
+                    ws_log("\r\nTrying cleartext connection...\r\n");
+                    failures = 0;
+                    wsConnection
+                            = webSocket.connect(remoteConnection.replace("wss:", "ws:"), clientHandler, wsp);
+                }
             }
             wsConnection.join();
-        } catch (WsError | InterruptedException e ) {
+        } catch (Exception e ) {
+            failures++;
             ws_log("Unexpected: " + e);
 //            e.printStackTrace();
         }
+        if (timer != null) timer.cancel();
+        if (service != null) service.close();
         ws_log("\r\nTest completed");
     }
 }
\ No newline at end of file